@@ -4,8 +4,9 @@ import models.*;
 import org.apache.commons.cli.ParseException;
 import utils.*;
 import problems.ProductionPlanningProblemWithSalvageRevenue;
+import problems.ScenarioReduction;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 public class Main {
 
@@ -16,16 +17,34 @@ public class Main {
 
         String instanceFile = conf.getInstanceFile();
         try {
-            ProductionPlanningProblemWithSalvageRevenue pp = DataReader.readProblemWithSalvageRevenue(instanceFile,conf.getOffset());
+            ProductionPlanningProblemWithSalvageRevenue pp = DataReader.readInstance(instanceFile,conf.getOffset(),conf.useSinglePrecision(),conf.useOffHeapStore());
+            if(conf.deduplicateScenarios()){
+                pp = ScenarioReduction.deduplicate(pp);
+            }
+            if(conf.reduceScenarios()){
+                ScenarioReduction reduction = new ScenarioReduction(conf.getReductionSize(), conf.getReductionTolerance());
+                ProductionPlanningProblemWithSalvageRevenue original = pp;
+                pp = reduction.reduce(pp);
+                TaskManager.saveReductionResults(conf, original, reduction);
+            }
             //pp.printSummary();
             if (conf.getTest().equalsIgnoreCase("full")) {
-                FullModel f = new FullModel(pp);
+                FullModel f = new FullModel(pp, conf.useVariableNames(), false);
                 f.solve(conf);
                 f.saveResults(conf);
                 f.saveSolution(conf);
             }
+            if (conf.getTest().equalsIgnoreCase("fullTight")) {
+                FullModel f = new FullModel(pp, conf.useVariableNames(), true);
+                f.solve(conf);
+                f.saveResults(conf);
+                f.saveSolution(conf);
+            }
+            if (conf.getTest().equalsIgnoreCase("fullRoot")) {
+                TaskManager.compareRootBounds(pp, conf);
+            }
             if (conf.getTest().equalsIgnoreCase("autobd")) {
-                AutoBenders abd = new AutoBenders(pp);
+                AutoBenders abd = new AutoBenders(pp, conf.useVariableNames());
                 abd.solve(conf);
                 abd.saveResults(conf);
             }
@@ -50,10 +69,10 @@ public class Main {
                     mp.addValidInequality6();
                 }
                 if(conf.addMinimalCoverInequalities()) {
-                    mp.addMinimalCoversInequalities();
+                    mp.addMinimalCoversInequalities(conf.getMaxCovers());
                 }
                 if(conf.addExtendedCoverInequalities()){
-                    mp.addExtendedCoverInequalities();
+                    mp.addExtendedCoverInequalities(conf.getMaxCovers());
                 }
                 mp.solve(conf);
                 mp.saveResults(conf);
@@ -71,10 +90,10 @@ public class Main {
                     mp.addValidInequality6();
                 }
                 if(conf.addMinimalCoverInequalities()) {
-                    mp.addMinimalCoversInequalities();
+                    mp.addMinimalCoversInequalities(conf.getMaxCovers());
                 }
                 if(conf.addExtendedCoverInequalities()){
-                    mp.addExtendedCoverInequalities();
+                    mp.addExtendedCoverInequalities(conf.getMaxCovers());
                 }
                 mp.solve(conf);
                 mp.saveResults(conf);
@@ -91,14 +110,20 @@ public class Main {
                     mp.addValidInequality6();
                 }
                 if(conf.addMinimalCoverInequalities()) {
-                    mp.addMinimalCoversInequalities();
+                    mp.addMinimalCoversInequalities(conf.getMaxCovers());
                 }
                 if(conf.addExtendedCoverInequalities()){
-                    mp.addExtendedCoverInequalities();
+                    mp.addExtendedCoverInequalities(conf.getMaxCovers());
                 }
                 mp.solve(conf);
                 mp.saveResults(conf);
             }
+            if (conf.getTest().equalsIgnoreCase("precision")) {
+                // Compares the instance in double precision with the instance in single precision
+                ProductionPlanningProblemWithSalvageRevenue dp = conf.useSinglePrecision() ? DataReader.readInstance(instanceFile,conf.getOffset(),false,false) : pp;
+                ProductionPlanningProblemWithSalvageRevenue sp = conf.useSinglePrecision() ? pp : DataReader.readInstance(instanceFile,conf.getOffset(),true,false);
+                TaskManager.computeSinglePrecisionError(dp,sp,conf);
+            }
             if(conf.getTest().startsWith("eev-")){
 
                 // First it loads the appropriate EV problem
@@ -116,13 +141,16 @@ public class Main {
 
                 }
                 System.out.println("Reading EV file "+evInstanceFile);
-                ProductionPlanningProblemWithSalvageRevenue ev = DataReader.readProblemWithSalvageRevenue(evInstanceFile,conf.getOffset());
+                ProductionPlanningProblemWithSalvageRevenue ev = DataReader.readInstance(evInstanceFile,conf.getOffset(),conf.useSinglePrecision(),conf.useOffHeapStore());
+                if(conf.deduplicateScenarios()){
+                    ev = ScenarioReduction.deduplicate(ev);
+                }
 
                 TaskManager.computeEEV(pp,ev,conf);
 
             }
 
-        } catch (FileNotFoundException | IloException e) {
+        } catch (IOException | IloException e) {
             e.printStackTrace();
         }
     }
@@ -2,13 +2,14 @@ package models;
 
 import ilog.concert.IloException;
 import ilog.concert.IloIntVar;
-import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.cplex.IloCplex;
 import problems.ProductionPlanningProblemWithSalvageRevenue;
 import utils.Configuration;
 import utils.Testable;
 
+import java.util.Arrays;
+
 public class AutoBenders extends Testable {
     private final ProductionPlanningProblemWithSalvageRevenue pp;
     private final IloCplex model;
@@ -25,213 +26,50 @@ public class AutoBenders extends Testable {
      * @throws IloException
      */
     public AutoBenders(ProductionPlanningProblemWithSalvageRevenue pp) throws IloException {
+        this(pp, true);
+    }
+
+    /**
+     * Constructs an instance of the model for the Production Planning Problem
+     * @param pp an instance of the production planning problem
+     * @param useNames whether the variables are given names, which can be skipped to save memory on large instances
+     * @throws IloException
+     */
+    public AutoBenders(ProductionPlanningProblemWithSalvageRevenue pp, boolean useNames) throws IloException {
         // Initializes the super class Testable which needs
         // a name for the experiment.
         super(pp, "abd");
         this.pp = pp;
         model = new IloCplex();
 
-        // Creates the decision variables
-        this.y = new IloIntVar[pp.getnProducts()][pp.getnFacilities()][pp.getMaxnProductionLevels()];
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
-                    y[p-1][f-1][l-1] = model.boolVar("y_"+p+"_"+f+"_"+l);
-                }
-            }
-        }
-        this.x = new IloNumVar[pp.getnProducts()][pp.getnFacilities()];
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                x[p-1][f-1] = model.numVar(0,Double.POSITIVE_INFINITY,"x_"+p+"_"+f);
-            }
-        }
-        this.delta = new IloIntVar[pp.getnProducts()][pp.getMaxNDistributions()];
-        this.w = new IloNumVar[pp.getnProducts()][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
-        this.o = new IloNumVar[pp.getnProducts()][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
-        this.mu = new IloNumVar[pp.getnProducts()][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
-        this.rho = new IloNumVar[pp.getnProducts()][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                delta[p-1][d-1] = model.boolVar("del_"+p+"_"+d);
-                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
-                    w[p-1][d-1][s-1] = model.numVar(0,Double.POSITIVE_INFINITY,"w_"+p+"_"+d+"_"+s);
-                    o[p-1][d-1][s-1] = model.numVar(0,Double.POSITIVE_INFINITY,"o_"+p+"_"+d+"_"+s);
-                    mu[p-1][d-1][s-1] = model.numVar(0,Double.POSITIVE_INFINITY,"mu_"+p+"_"+d+"_"+s);
-                    rho[p-1][d-1][s-1] = model.numVar(0,Double.POSITIVE_INFINITY,"rho_"+p+"_"+d+"_"+s);
-                }
-            }
-        }
-        // ========================================
-        // Creates the objective function
-        IloLinearNumExpr objective = model.linearNumExpr();
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                objective.addTerm(-pp.getManufacturingCosts(f,p), x[p-1][f-1]);
-            }
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
-                    objective.addTerm(pp.getProbability(p,d,s)*pp.getSalesPrice(p),mu[p-1][d-1][s-1]);
-                    objective.addTerm(pp.getProbability(p,d,s)*pp.getLeftoverCosts(p),rho[p-1][d-1][s-1]);
-                }
-            }
-        }
-        model.addMaximize(objective);
-        // ======================================
-        // Creates the constraints
-        // (b.1) Production quantities lower bounds
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
-                   lhs.addTerm(pp.getProductionLevelLowerBound(f,p,l),y[p-1][f-1][l-1]);
-                }
-                lhs.addTerm(-1,x[p - 1][f - 1]);
-                model.addLe(lhs, 0);
-            }
-        }
-        // (b.2) Production quantities upper bounds
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                IloLinearNumExpr rhs = model.linearNumExpr();
-                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
-                    rhs.addTerm(pp.getProductionLevelUpperBound(f,p,l),y[p-1][f-1][l-1]);
-                }
-                model.addLe(x[p - 1][f - 1], rhs);
-            }
-        }
-        // (b.3) Total production bound
-        for(int f = 1; f <= pp.getnFacilities(); f++){
-            IloLinearNumExpr lhs = model.linearNumExpr();
-            for (int p = 1; p <= pp.getnProducts(); p++) {
-                lhs.addTerm(1, x[p - 1][f - 1]);
-            }
-            model.addLe(lhs, pp.getTotalCapacity(f));
-        }
-        // (c) Choice of one production level
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int f = 1; f <= pp.getnFacilities(); f++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
-                    lhs.addTerm(1,y[p-1][f-1][l-1]);
-                }
-                model.addEq(lhs, 1);
-            }
-        }
-        // (d) Enforcement of a distribution
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                for(int f = 1; f <= pp.getnFacilities(); f++){
-                    int level = pp.getDistributionProductionLevels(p,d,f);
-                    lhs.addTerm(1,y[p-1][f-1][level]);
-                }
-                lhs.addTerm(-pp.getnFacilities(),delta[p - 1][d - 1]);
-                model.addGe(lhs,0);
-            }
-        }
-
-        // (e) For each product exactly one distribution
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            IloLinearNumExpr lhs = model.linearNumExpr();
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                lhs.addTerm(1,delta[p-1][d-1]);
-            }
-            model.addEq(lhs, 1);
-        }
-
-        // (f) Production quantities
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    IloLinearNumExpr rhs = model.linearNumExpr();
-                    for(int f = 1; f <= pp.getnFacilities(); f++){
-                        rhs.addTerm(pp.getYieldRealization(p,d,f,s) ,x[p-1][f-1]);
-                    }
-                    IloLinearNumExpr lhs = model.linearNumExpr();
-                    lhs.addTerm(1,w[p-1][d-1][s-1]);
-                    lhs.addTerm(1,o[p-1][d-1][s-1]);
-                    model.addEq(lhs, rhs);
-                }
-            }
-        }
-        // (g) Demand satisfaction
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    model.addLe(w[p - 1][d - 1][s - 1], pp.getDemandRealization(p, d, s));
-                }
-            }
-        }
-        // Linearization constraints
-        // (h) mu and w
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    model.addLe(mu[p - 1][d - 1][s - 1], w[p - 1][d - 1][s - 1]);
-                }
-            }
-        }
-        // (i) mu and delta
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    IloLinearNumExpr rhs = model.linearNumExpr();
-                    rhs.addTerm(pp.getUpperBoundOnSales(p,d,s) , delta[p-1][d-1]);
-                    model.addLe(mu[p-1][d-1][s-1],rhs);
-                }
-            }
-        }
-        // (j) mu, w and delta
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    IloLinearNumExpr lhs = model.linearNumExpr();
-                    lhs.addTerm(1 , mu[p-1][d-1][s-1]);
-                    lhs.addTerm(-1 , w[p-1][d-1][s-1]);
-                    lhs.addTerm(-pp.getUpperBoundOnSales(p,d,s) , delta[p-1][d-1]);
-                    model.addGe(lhs, -pp.getUpperBoundOnSales(p,d,s) );
-                }
-            }
-        }
-        // (k) rho and o
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    model.addLe(rho[p-1][d-1][s-1],o[p-1][d-1][s-1]);
-                }
-            }
-        }
-        // (l) rho and delta
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    IloLinearNumExpr rhs = model.linearNumExpr();
-                    rhs.addTerm(pp.getUpperBoundOnOversupply(p,d,s) , delta[p-1][d-1]);
-                    model.addLe(rho[p-1][d-1][s-1], rhs );
-                }
-            }
-        }
-        // (m) rho, o and delta
-        for (int p = 1; p <= pp.getnProducts(); p++){
-            for(int d = 1; d <= pp.getnDistributions(p); d++){
-                for(int s = 1; s <= pp.getnScenarios(p,d);s++){
-                    IloLinearNumExpr lhs = model.linearNumExpr();
-                    lhs.addTerm(1,rho[p - 1][d - 1][s - 1]);
-                    lhs.addTerm(-1,o[p - 1][d - 1][s - 1]);
-                    lhs.addTerm(-pp.getUpperBoundOnOversupply(p,d,s) , delta[p-1][d-1]);
-                    model.addGe(lhs, -pp.getUpperBoundOnOversupply(p,d,s));
-                }
-            }
-        }
+        // Creates the variables, the objective function and the constraints in bulk
+        ExtensiveForm form = new ExtensiveForm(pp, model, useNames, false);
+        this.y = form.getY();
+        this.x = form.getX();
+        this.delta = form.getDelta();
+        this.w = form.getW();
+        this.o = form.getO();
+        this.mu = form.getMu();
+        this.rho = form.getRho();
     }
 
     public void solve(Configuration config) throws IloException {
         model.setParam(IloCplex.Param.TimeLimit, config.getTimeLimit());
         model.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, config.getTargetGap());
         model.setParam(IloCplex.Param.MIP.Strategy.LBHeur,config.useLocalBranching());
+        if(config.getThreads() > 0){
+            model.setParam(IloCplex.Param.Threads, config.getThreads());
+        }
 
-        model.setParam(IloCplex.Param.Benders.Strategy,3);
+        if(config.getBendersPartition().equalsIgnoreCase("auto")){
+            model.setParam(IloCplex.Param.Benders.Strategy,3);
+        }else{
+            int nSubproblems = annotate(config.getBendersPartition(), config.getBendersClusters());
+            System.out.println("Benders decomposition annotated with "+nSubproblems+" subproblems");
+            // Distinguishes the partitions in the results
+            experiment_name = "abd-"+config.getBendersPartition().toLowerCase();
+            model.setParam(IloCplex.Param.Benders.Strategy,1);
+        }
         // Write out the generated annotation.
         //model.writeBendersAnnotation("benders.ann");
         model.use(new ProgressCallback(config));
@@ -247,6 +85,53 @@ public class AutoBenders extends Testable {
 
     }
 
+    /**
+     * Annotates the variables for the Benders decomposition: y, x and delta are in the master problem, and the recourse variables
+     * w, o, mu and rho are grouped in subproblems by product, by product and distribution, or by clusters of consecutive
+     * scenarios of each product and distribution.
+     * Since the constraints of a scenario only involve x, delta and its own recourse variables, any grouping of the scenarios
+     * gives independent subproblems.
+     * @param partition product, distribution or cluster
+     * @param nClusters the number of clusters of each distribution in the cluster partition
+     * @return the number of subproblems
+     * @throws IloException
+     */
+    private int annotate(String partition, int nClusters) throws IloException {
+        IloCplex.LongAnnotation benders = model.newLongAnnotation(IloCplex.CPX_BENDERS_ANNOTATION, IloCplex.CPX_BENDERS_MASTERVALUE);
+        int nSubproblems = 0;
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            if(partition.equalsIgnoreCase("product")){
+                nSubproblems++;
+            }
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                if(partition.equalsIgnoreCase("distribution")){
+                    nSubproblems++;
+                }
+                int nScenarios = pp.getnScenarios(p,d);
+                int nDistributionClusters = Math.min(nClusters, nScenarios);
+                IloNumVar variables[] = new IloNumVar[4 * nScenarios];
+                long subproblems[] = new long[4 * nScenarios];
+                for(int s = 1; s <= nScenarios; s++){
+                    long subproblem = nSubproblems;
+                    if(partition.equalsIgnoreCase("cluster")){
+                        // The clusters are blocks of consecutive scenarios of almost equal sizes
+                        subproblem = nSubproblems + 1 + (long) (s-1) * nDistributionClusters / nScenarios;
+                    }
+                    variables[4*(s-1)] = w[p-1][d-1][s-1];
+                    variables[4*(s-1)+1] = o[p-1][d-1][s-1];
+                    variables[4*(s-1)+2] = mu[p-1][d-1][s-1];
+                    variables[4*(s-1)+3] = rho[p-1][d-1][s-1];
+                    Arrays.fill(subproblems, 4*(s-1), 4*s, subproblem);
+                }
+                if(partition.equalsIgnoreCase("cluster")){
+                    nSubproblems = nSubproblems + nDistributionClusters;
+                }
+                model.setAnnotation(benders, variables, subproblems);
+            }
+        }
+        return nSubproblems;
+    }
+
     public void printSolution() throws IloException {
 
         System.out.println("Production level decisions");
@@ -310,23 +195,12 @@ public class AutoBenders extends Testable {
     public double[][] getSecondStageOversupply() throws IloException{
         int[][][] Y = getFirstStageYSolution();
         double[][] X = getFirstStageXSolution();
+        RecourseEvaluator evaluators[] = RecourseEvaluator.forAllProducts(pp);
         double o[][] = new double[pp.getnProducts()][pp.getMaxNScenarios()];
         for(int p = 1; p <= pp.getnProducts(); p++) {
-            for (int d = 1; d <= pp.getnDistributions(p); d++) {
-                boolean enforced = true;
-                for (int f = 1; f <= pp.getnFacilities(); f++) {
-                    int level = pp.getDistributionProductionLevels(p, d, f);
-                    if (Y[p - 1][f - 1][level] < 0.5) {
-                        enforced = false;
-                        break;
-                    }
-                }
-                if(enforced){
-                    for (int s = 1; s <= pp.getnScenarios(p, d); s++) {
-                        OptimalitySubproblemV1 osp = new OptimalitySubproblemV1(p, d, s, X, pp);
-                        o[p-1][s-1] = osp.getOversupply();
-                    }
-                }
+            int d = pp.getEnforcedDistribution(p, Y[p-1]);
+            if(d > 0){
+                evaluators[p-1].computeOversupply(d, X[p-1], o[p-1]);
             }
 
         }
@@ -337,23 +211,12 @@ public class AutoBenders extends Testable {
     public double[][] getSecondStageSales() throws IloException{
         int[][][] Y = getFirstStageYSolution();
         double[][] X = getFirstStageXSolution();
+        RecourseEvaluator evaluators[] = RecourseEvaluator.forAllProducts(pp);
         double w[][] = new double[pp.getnProducts()][pp.getMaxNScenarios()];
         for(int p = 1; p <= pp.getnProducts(); p++) {
-            for (int d = 1; d <= pp.getnDistributions(p); d++) {
-                boolean enforced = true;
-                for (int f = 1; f <= pp.getnFacilities(); f++) {
-                    int level = pp.getDistributionProductionLevels(p, d, f);
-                    if (Y[p - 1][f - 1][level] < 0.5) {
-                        enforced = false;
-                        break;
-                    }
-                }
-                if(enforced){
-                    for (int s = 1; s <= pp.getnScenarios(p, d); s++) {
-                        OptimalitySubproblemV1 osp = new OptimalitySubproblemV1(p, d, s, X, pp);
-                        w[p-1][s-1] = osp.getSales();
-                    }
-                }
+            int d = pp.getEnforcedDistribution(p, Y[p-1]);
+            if(d > 0){
+                evaluators[p-1].computeSales(d, X[p-1], w[p-1]);
             }
 
         }
@@ -0,0 +1,532 @@
+package models;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLPMatrix;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+import problems.ProductionPlanningProblemWithSalvageRevenue;
+
+import java.util.Arrays;
+
+/**
+ * Builds the extensive form of the Production Planning Problem with salvage revenue in bulk.
+ * The variables of each kind are created at once with boolVarArray and numVarArray, and the constraints are assembled
+ * in primitive buffers in compressed sparse row form, which are added to an IloLPMatrix in batches of rows.
+ * This avoids creating an expression object per constraint, which dominates the time and memory needed to build
+ * the model on instances with many scenarios.
+ * The names of the variables are optional, since they take a large part of the memory of the model.
+ * The demand realizations are upper bounds of the w variables instead of constraints (g).
+ * <p>
+ * The product of delta with the sales and the oversupply is either linearized with the big-M constraints (h)-(m) on mu and rho,
+ * or disaggregated by distribution. The disaggregated formulation copies the quantities of each product for each distribution,
+ * xd(p,d,f) = x(p,f) * delta(p,d), within the bounds of the level enforced by the distribution times delta(p,d), so that
+ * the sales and the oversupply of a distribution are computed from its own copy, and vanish with delta(p,d) without mu and rho.
+ * Its LP relaxation is tighter, since a fractional delta scales the production of each distribution instead of
+ * only bounding its sales and oversupply.
+ */
+class ExtensiveForm {
+    private static final int BATCH_SIZE = 1 << 16; // The number of rows added to the matrix at once
+
+    private final ProductionPlanningProblemWithSalvageRevenue pp;
+    private final IloLPMatrix matrix;
+    private final IloIntVar y[][][]; // [nProducts][nFacilities][maxNProductionLevels]
+    private final IloNumVar x[][]; // [nProducts][nFacilities]
+    private final IloIntVar delta[][]; // [nProducts][maxNDistributions]
+    private final IloNumVar w[][][]; // [nProducts][maxNDistributions][maxNScenarios]
+    private final IloNumVar o[][][];
+    private final IloNumVar mu[][][];
+    private final IloNumVar rho[][][];
+    private final IloNumVar xd[][][]; // The quantities of each distribution, null unless disaggregated [nProducts][maxNDistributions][nFacilities]
+    private final boolean disaggregated; // Whether the distributions are disaggregated instead of linearized with big-M constraints
+    private final int yColumns[][]; // The column of the first level of each product and facility [nProducts][nFacilities]
+    private final int deltaColumns[]; // The column of the first distribution of each product [nProducts]
+    private final int scenarioOffsets[][]; // The position of the first scenario of each distribution in the arrays of scenario variables [nProducts][maxNDistributions]
+    private int xFirstColumn;
+    private int deltaFirstColumn;
+    private int xdFirstColumn;
+    private int wFirstColumn;
+    private int oFirstColumn;
+    private int muFirstColumn;
+    private int rhoFirstColumn;
+
+    // The rows waiting to be added to the matrix, in compressed sparse row form
+    private int nRows = 0;
+    private int nNonZeros = 0;
+    private int rowStarts[] = new int[BATCH_SIZE + 1];
+    private double rowLowerBounds[] = new double[BATCH_SIZE];
+    private double rowUpperBounds[] = new double[BATCH_SIZE];
+    private int columns[] = new int[4 * BATCH_SIZE];
+    private double values[] = new double[4 * BATCH_SIZE];
+
+    /**
+     * Creates the variables, the objective function and the constraints of the extensive form in the model.
+     * @param pp an instance of the production planning problem
+     * @param model the model, which must be empty
+     * @param useNames whether the variables are given names
+     * @param disaggregated whether the distributions are disaggregated, in which case there are no mu and rho variables
+     * @throws IloException
+     */
+    ExtensiveForm(ProductionPlanningProblemWithSalvageRevenue pp, IloCplex model, boolean useNames, boolean disaggregated) throws IloException {
+        this.pp = pp;
+        this.disaggregated = disaggregated;
+        this.matrix = model.addLPMatrix();
+        int nProducts = pp.getnProducts();
+        int nFacilities = pp.getnFacilities();
+
+        // Counts the variables of each kind and computes their positions
+        this.yColumns = new int[nProducts][nFacilities];
+        this.deltaColumns = new int[nProducts];
+        this.scenarioOffsets = new int[nProducts][pp.getMaxNDistributions()];
+        int nY = 0;
+        int nDelta = 0;
+        int nScenarios = 0;
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                yColumns[p-1][f-1] = nY;
+                nY = nY + pp.getnProductionLevels(f,p);
+            }
+            deltaColumns[p-1] = nDelta;
+            nDelta = nDelta + pp.getnDistributions(p);
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                scenarioOffsets[p-1][d-1] = nScenarios;
+                nScenarios = nScenarios + pp.getnScenarios(p,d);
+            }
+        }
+
+        // Creates the decision variables
+        String yNames[] = null;
+        String xNames[] = null;
+        String deltaNames[] = null;
+        String wNames[] = null;
+        String oNames[] = null;
+        String muNames[] = null;
+        String rhoNames[] = null;
+        String xdNames[] = null;
+        if(useNames){
+            yNames = new String[nY];
+            xNames = new String[nProducts * nFacilities];
+            deltaNames = new String[nDelta];
+            wNames = new String[nScenarios];
+            oNames = new String[nScenarios];
+            if(disaggregated){
+                xdNames = new String[nDelta * nFacilities];
+            }else{
+                muNames = new String[nScenarios];
+                rhoNames = new String[nScenarios];
+            }
+            for (int p = 1; p <= nProducts; p++){
+                for(int f = 1; f <= nFacilities; f++){
+                    xNames[(p-1) * nFacilities + f-1] = "x_"+p+"_"+f;
+                    for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                        yNames[yColumns[p-1][f-1] + l-1] = "y_"+p+"_"+f+"_"+l;
+                    }
+                }
+                for(int d = 1; d <= pp.getnDistributions(p); d++){
+                    deltaNames[deltaColumns[p-1] + d-1] = "del_"+p+"_"+d;
+                    if(disaggregated){
+                        for(int f = 1; f <= nFacilities; f++){
+                            xdNames[(deltaColumns[p-1] + d-1) * nFacilities + f-1] = "xd_"+p+"_"+d+"_"+f;
+                        }
+                    }
+                    for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                        int i = scenarioOffsets[p-1][d-1] + s-1;
+                        wNames[i] = "w_"+p+"_"+d+"_"+s;
+                        oNames[i] = "o_"+p+"_"+d+"_"+s;
+                        if(!disaggregated){
+                            muNames[i] = "mu_"+p+"_"+d+"_"+s;
+                            rhoNames[i] = "rho_"+p+"_"+d+"_"+s;
+                        }
+                    }
+                }
+            }
+        }
+        double lowerBounds[] = new double[nScenarios];
+        double demands[] = new double[nScenarios];
+        for (int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    // (g) Demand satisfaction
+                    demands[scenarioOffsets[p-1][d-1] + s-1] = pp.getDemandRealization(p,d,s);
+                }
+            }
+        }
+        IloIntVar yVars[] = useNames ? model.boolVarArray(nY, yNames) : model.boolVarArray(nY);
+        IloNumVar xVars[] = useNames ? model.numVarArray(nProducts * nFacilities, 0, Double.POSITIVE_INFINITY, xNames) : model.numVarArray(nProducts * nFacilities, 0, Double.POSITIVE_INFINITY);
+        IloIntVar deltaVars[] = useNames ? model.boolVarArray(nDelta, deltaNames) : model.boolVarArray(nDelta);
+        IloNumVar wVars[] = useNames ? model.numVarArray(nScenarios, lowerBounds, demands, wNames) : model.numVarArray(nScenarios, lowerBounds, demands);
+        IloNumVar oVars[] = useNames ? model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY, oNames) : model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY);
+        IloNumVar muVars[] = null;
+        IloNumVar rhoVars[] = null;
+        IloNumVar xdVars[] = null;
+        if(disaggregated){
+            xdVars = useNames ? model.numVarArray(nDelta * nFacilities, 0, Double.POSITIVE_INFINITY, xdNames) : model.numVarArray(nDelta * nFacilities, 0, Double.POSITIVE_INFINITY);
+        }else{
+            muVars = useNames ? model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY, muNames) : model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY);
+            rhoVars = useNames ? model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY, rhoNames) : model.numVarArray(nScenarios, 0, Double.POSITIVE_INFINITY);
+        }
+
+        // Adds the variables as columns of the matrix, and keeps their first column
+        int yFirstColumn = matrix.addCols(yVars);
+        this.xFirstColumn = matrix.addCols(xVars);
+        this.deltaFirstColumn = matrix.addCols(deltaVars);
+        this.wFirstColumn = matrix.addCols(wVars);
+        this.oFirstColumn = matrix.addCols(oVars);
+        if(disaggregated){
+            this.xdFirstColumn = matrix.addCols(xdVars);
+        }else{
+            this.muFirstColumn = matrix.addCols(muVars);
+            this.rhoFirstColumn = matrix.addCols(rhoVars);
+        }
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                yColumns[p-1][f-1] = yColumns[p-1][f-1] + yFirstColumn;
+            }
+            deltaColumns[p-1] = deltaColumns[p-1] + deltaFirstColumn;
+        }
+
+        // Indexes the variables as in the other models
+        this.y = new IloIntVar[nProducts][nFacilities][pp.getMaxnProductionLevels()];
+        this.x = new IloNumVar[nProducts][nFacilities];
+        this.delta = new IloIntVar[nProducts][pp.getMaxNDistributions()];
+        this.w = new IloNumVar[nProducts][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
+        this.o = new IloNumVar[nProducts][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
+        this.mu = disaggregated ? null : new IloNumVar[nProducts][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
+        this.rho = disaggregated ? null : new IloNumVar[nProducts][pp.getMaxNDistributions()][pp.getMaxNScenarios()];
+        this.xd = disaggregated ? new IloNumVar[nProducts][pp.getMaxNDistributions()][nFacilities] : null;
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                x[p-1][f-1] = xVars[(p-1) * nFacilities + f-1];
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    y[p-1][f-1][l-1] = yVars[yColumns[p-1][f-1] - yFirstColumn + l-1];
+                }
+            }
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                delta[p-1][d-1] = deltaVars[deltaColumns[p-1] - deltaFirstColumn + d-1];
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    int i = scenarioOffsets[p-1][d-1] + s-1;
+                    w[p-1][d-1][s-1] = wVars[i];
+                    o[p-1][d-1][s-1] = oVars[i];
+                    if(!disaggregated){
+                        mu[p-1][d-1][s-1] = muVars[i];
+                        rho[p-1][d-1][s-1] = rhoVars[i];
+                    }
+                }
+                if(disaggregated){
+                    for(int f = 1; f <= nFacilities; f++){
+                        xd[p-1][d-1][f-1] = xdVars[getXdColumn(p,d,f) - xdFirstColumn];
+                    }
+                }
+            }
+        }
+
+        // ========================================
+        // Creates the objective function
+        double xCosts[] = new double[nProducts * nFacilities];
+        double muCoefficients[] = new double[nScenarios];
+        double rhoCoefficients[] = new double[nScenarios];
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                xCosts[(p-1) * nFacilities + f-1] = -pp.getManufacturingCosts(f,p);
+            }
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    int i = scenarioOffsets[p-1][d-1] + s-1;
+                    muCoefficients[i] = pp.getProbability(p,d,s)*pp.getSalesPrice(p);
+                    rhoCoefficients[i] = pp.getProbability(p,d,s)*pp.getLeftoverCosts(p);
+                }
+            }
+        }
+        IloLinearNumExpr objective = model.linearNumExpr();
+        objective.addTerms(xCosts, xVars);
+        // The sales and the oversupply of the distributions not enforced vanish in the disaggregated formulation
+        objective.addTerms(muCoefficients, disaggregated ? wVars : muVars);
+        objective.addTerms(rhoCoefficients, disaggregated ? oVars : rhoVars);
+        model.addMaximize(objective);
+
+        // ======================================
+        // Creates the constraints
+        // (b.1) Production quantities lower bounds
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    addTerm(getYColumn(p,f,l), pp.getProductionLevelLowerBound(f,p,l));
+                }
+                addTerm(getXColumn(p,f), -1);
+                endRow(Double.NEGATIVE_INFINITY, 0);
+            }
+        }
+        // (b.2) Production quantities upper bounds
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                addTerm(getXColumn(p,f), 1);
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    addTerm(getYColumn(p,f,l), -pp.getProductionLevelUpperBound(f,p,l));
+                }
+                endRow(Double.NEGATIVE_INFINITY, 0);
+            }
+        }
+        // (b.3) Total production bound
+        for(int f = 1; f <= nFacilities; f++){
+            for (int p = 1; p <= nProducts; p++) {
+                addTerm(getXColumn(p,f), 1);
+            }
+            endRow(Double.NEGATIVE_INFINITY, pp.getTotalCapacity(f));
+        }
+        // (c) Choice of one production level
+        for (int p = 1; p <= nProducts; p++){
+            for(int f = 1; f <= nFacilities; f++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    addTerm(getYColumn(p,f,l), 1);
+                }
+                endRow(1, 1);
+            }
+        }
+        // (d) Enforcement of a distribution
+        for (int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int f = 1; f <= nFacilities; f++){
+                    addTerm(getYColumn(p,f,pp.getDistributionProductionLevels(p,d,f) + 1), 1);
+                }
+                addTerm(getDeltaColumn(p,d), -nFacilities);
+                endRow(0, Double.POSITIVE_INFINITY);
+            }
+        }
+        // (e) For each product exactly one distribution
+        for (int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                addTerm(getDeltaColumn(p,d), 1);
+            }
+            endRow(1, 1);
+        }
+        if(disaggregated){
+            addDisaggregatedConstraints();
+        }else{
+            addBigMConstraints();
+        }
+        flush();
+        // Releases the buffers
+        rowStarts = null;
+        rowLowerBounds = null;
+        rowUpperBounds = null;
+        columns = null;
+        values = null;
+    }
+
+    /**
+     * Adds the production quantities of each scenario, and the big-M linearization of the products of delta with w and o.
+     * @throws IloException
+     */
+    private void addBigMConstraints() throws IloException {
+        // (f) Production quantities
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    addTerm(getScenarioColumn(wFirstColumn,p,d,s), 1);
+                    addTerm(getScenarioColumn(oFirstColumn,p,d,s), 1);
+                    for(int f = 1; f <= pp.getnFacilities(); f++){
+                        addTerm(getXColumn(p,f), -pp.getYieldRealization(p,d,f,s));
+                    }
+                    endRow(0, 0);
+                }
+            }
+        }
+        // Linearization constraints
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    int wColumn = getScenarioColumn(wFirstColumn,p,d,s);
+                    int oColumn = getScenarioColumn(oFirstColumn,p,d,s);
+                    int muColumn = getScenarioColumn(muFirstColumn,p,d,s);
+                    int rhoColumn = getScenarioColumn(rhoFirstColumn,p,d,s);
+                    int deltaColumn = getDeltaColumn(p,d);
+                    double salesBound = pp.getUpperBoundOnSales(p,d,s);
+                    double oversupplyBound = pp.getUpperBoundOnOversupply(p,d,s);
+                    // (h) mu and w
+                    addTerm(muColumn, 1);
+                    addTerm(wColumn, -1);
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                    // (i) mu and delta
+                    addTerm(muColumn, 1);
+                    addTerm(deltaColumn, -salesBound);
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                    // (j) mu, w and delta
+                    addTerm(muColumn, 1);
+                    addTerm(wColumn, -1);
+                    addTerm(deltaColumn, -salesBound);
+                    endRow(-salesBound, Double.POSITIVE_INFINITY);
+                    // (k) rho and o
+                    addTerm(rhoColumn, 1);
+                    addTerm(oColumn, -1);
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                    // (l) rho and delta
+                    addTerm(rhoColumn, 1);
+                    addTerm(deltaColumn, -oversupplyBound);
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                    // (m) rho, o and delta
+                    addTerm(rhoColumn, 1);
+                    addTerm(oColumn, -1);
+                    addTerm(deltaColumn, -oversupplyBound);
+                    endRow(-oversupplyBound, Double.POSITIVE_INFINITY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the production quantities of each scenario computed from the quantities of its distribution,
+     * and the constraints that link the quantities of the distributions with x and delta.
+     * @throws IloException
+     */
+    private void addDisaggregatedConstraints() throws IloException {
+        int nFacilities = pp.getnFacilities();
+        // (f) Production quantities of each distribution
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    addTerm(getScenarioColumn(wFirstColumn,p,d,s), 1);
+                    addTerm(getScenarioColumn(oFirstColumn,p,d,s), 1);
+                    for(int f = 1; f <= nFacilities; f++){
+                        addTerm(getXdColumn(p,d,f), -pp.getYieldRealization(p,d,f,s));
+                    }
+                    endRow(0, 0);
+                }
+            }
+        }
+        // (h) Sales and delta
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int s = 1; s <= pp.getnScenarios(p,d); s++){
+                    addTerm(getScenarioColumn(wFirstColumn,p,d,s), 1);
+                    addTerm(getDeltaColumn(p,d), -pp.getUpperBoundOnSales(p,d,s));
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                }
+            }
+        }
+        // (i) The quantities of the distributions add up to x
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int f = 1; f <= nFacilities; f++){
+                for(int d = 1; d <= pp.getnDistributions(p); d++){
+                    addTerm(getXdColumn(p,d,f), 1);
+                }
+                addTerm(getXColumn(p,f), -1);
+                endRow(0, 0);
+            }
+        }
+        // (j) The quantities of a distribution are within the bounds of the levels it enforces, or zero
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
+                for(int f = 1; f <= nFacilities; f++){
+                    int level = pp.getDistributionProductionLevels(p,d,f) + 1;
+                    double upperBound = Math.min(pp.getProductionLevelUpperBound(f,p,level), pp.getTotalCapacity(f));
+                    addTerm(getXdColumn(p,d,f), 1);
+                    addTerm(getDeltaColumn(p,d), -pp.getProductionLevelLowerBound(f,p,level));
+                    endRow(0, Double.POSITIVE_INFINITY);
+                    addTerm(getXdColumn(p,d,f), 1);
+                    addTerm(getDeltaColumn(p,d), -upperBound);
+                    endRow(Double.NEGATIVE_INFINITY, 0);
+                }
+            }
+        }
+    }
+
+    private int getYColumn(int product, int facility, int level) {
+        return yColumns[product-1][facility-1] + level-1;
+    }
+
+    private int getXColumn(int product, int facility) {
+        return xFirstColumn + (product-1) * pp.getnFacilities() + facility-1;
+    }
+
+    private int getDeltaColumn(int product, int distribution) {
+        return deltaColumns[product-1] + distribution-1;
+    }
+
+    private int getXdColumn(int product, int distribution, int facility) {
+        return xdFirstColumn + (getDeltaColumn(product,distribution) - deltaFirstColumn) * pp.getnFacilities() + facility-1;
+    }
+
+    private int getScenarioColumn(int firstColumn, int product, int distribution, int scenario) {
+        return firstColumn + scenarioOffsets[product-1][distribution-1] + scenario-1;
+    }
+
+    /**
+     * Appends a term to the row being assembled.
+     * @param column the column of the variable in the matrix
+     * @param value the coefficient
+     */
+    private void addTerm(int column, double value) {
+        if(nNonZeros == columns.length){
+            columns = Arrays.copyOf(columns, 2 * columns.length);
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+        columns[nNonZeros] = column;
+        values[nNonZeros] = value;
+        nNonZeros++;
+    }
+
+    /**
+     * Closes the row being assembled, and adds the rows assembled to the matrix if the batch is full.
+     * @param lb the lower bound of the row
+     * @param ub the upper bound of the row
+     * @throws IloException
+     */
+    private void endRow(double lb, double ub) throws IloException {
+        rowLowerBounds[nRows] = lb;
+        rowUpperBounds[nRows] = ub;
+        nRows++;
+        rowStarts[nRows] = nNonZeros;
+        if(nRows == BATCH_SIZE){
+            flush();
+        }
+    }
+
+    /**
+     * Adds the rows assembled to the matrix.
+     * The matrix takes the rows as separate arrays, which are cut from the buffers.
+     * @throws IloException
+     */
+    private void flush() throws IloException {
+        if(nRows == 0){
+            return;
+        }
+        int rowColumns[][] = new int[nRows][];
+        double rowValues[][] = new double[nRows][];
+        for(int r = 0; r < nRows; r++){
+            rowColumns[r] = Arrays.copyOfRange(columns, rowStarts[r], rowStarts[r+1]);
+            rowValues[r] = Arrays.copyOfRange(values, rowStarts[r], rowStarts[r+1]);
+        }
+        matrix.addRows(Arrays.copyOf(rowLowerBounds, nRows), Arrays.copyOf(rowUpperBounds, nRows), rowColumns, rowValues);
+        nRows = 0;
+        nNonZeros = 0;
+    }
+
+    IloIntVar[][][] getY() {
+        return y;
+    }
+
+    IloNumVar[][] getX() {
+        return x;
+    }
+
+    IloIntVar[][] getDelta() {
+        return delta;
+    }
+
+    IloNumVar[][][] getW() {
+        return w;
+    }
+
+    IloNumVar[][][] getO() {
+        return o;
+    }
+
+    IloNumVar[][][] getMu() {
+        return mu;
+    }
+
+    IloNumVar[][][] getRho() {
+        return rho;
+    }
+}
@@ -182,118 +182,30 @@ public class MasterProblemV2 extends TestableMasterProblemSplitVariablesWSR {
         model.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, config.getTargetGap());
         model.setParam(IloCplex.Param.MIP.Strategy.LBHeur,config.useLocalBranching());
 
-        model.use(new CutsCallback());
-        model.use(new ProgressCallback(config));
+        useCallbacks(config);
     }
-    private class CutsCallback extends IloCplex.LazyConstraintCallback {
-        public CutsCallback(){
-
-        }
+    @Override
+    protected OptimalityCutSeparator createSeparator() {
+        return new Separator();
+    }
+    private class Separator extends OptimalityCutSeparator {
 
         @Override
-        protected void main() throws IloException {
-            // Stores the LP root relaxation time
-            if(getNodeId().toString().equalsIgnoreCase("Node0") && rootNodeRelaxationTime < 0){
-                rootNodeRelaxationTime = (System.nanoTime() - start)/1e9;
-                rootNodeLPbound = getObjValue();
+        protected void computeQuantities(int p, int d, double quantities[]) {
+            // The quantity produced at each facility is that of the level enforced by the distribution
+            for(int f = 1; f <= pp.getnFacilities(); f++) {
+                quantities[f-1] = view.getX(p,f,pp.getDistributionProductionLevels(p,d,f)+1);
             }
-
-            nCallbackCalls++;
-            System.out.println("Callback call #"+nCallbackCalls+ ". # cuts added so far "+nCuts);
-            long cbStart = System.nanoTime();
-
-            double X[][][] = getX();
-            double Y[][][] = getY();
-
-
-            for (int p = 1; p <= pp.getnProducts(); p++) {
-                // First, we identify the distribution enforced on the product
-                for (int d = 1; d <= pp.getnDistributions(p); d++) {
-                    boolean enforced = true;
-                    for(int f = 1; f <= pp.getnFacilities(); f++){
-                        int level = pp.getDistributionProductionLevels(p,d,f);
-                        if(Y[p-1][f-1][level] < 0.5){
-                            enforced = false;
-                            break;
-                        }
-                    }
-                    if(enforced) {
-                        // If the distribution is enforced we proceed to generate an optimality cut
-                        //System.out.println("Product "+p+" distribution enforced "+d);
-
-                        // We start creating the cut, in case late we need it
-                        IloLinearNumExpr firstCutLHS = model.linearNumExpr();
-                        firstCutLHS.addTerm(1, phi[p - 1]);
-                        double firstCutRHS = 0;
-                        // First we compute the expected profit for this distribution
-                        // to make the optimality test
-                        double expectedProfit = 0;
-
-                        for (int s = 1; s <= pp.getnScenarios(p, d); s++) {
-                            OptimalitySubproblemV2 optimalitySubproblem = new OptimalitySubproblemV2(p, d, s, X, pp);
-                            double objectiveValue = optimalitySubproblem.solve();
-                            expectedProfit = expectedProfit + (pp.getProbability(p,d,s) * objectiveValue);
-
-                            // We add terms to the cut
-                            if(pp.getDemandRealization(p,d,s) <= optimalitySubproblem.getTotalProduction()){
-                                firstCutRHS = firstCutRHS
-                                        + (pp.getProbability(p,d,s) * (pp.getSalesPrice(p) - pp.getLeftoverCosts(p)) * pp.getDemandRealization(p,d,s));
-                                for(int f = 1; f <= pp.getnFacilities(); f++) {
-                                    firstCutLHS.addTerm(-pp.getProbability(p, d, s) * pp.getLeftoverCosts(p) * pp.getYieldRealization(p,d,f,s),x[p-1][f-1][pp.getDistributionProductionLevels(p,d,f)]);
-                                }
-                            }else{
-                                for(int f = 1; f <= pp.getnFacilities(); f++) {
-                                    firstCutLHS.addTerm(-pp.getProbability(p, d, s) * pp.getSalesPrice(p) * pp.getYieldRealization(p,d,f,s),x[p-1][f-1][pp.getDistributionProductionLevels(p,d,f)]);
-                                }
-                            }
-                        }
-                        firstCutRHS = firstCutRHS +  pp.getUpperBoundProductExpectation(p) * pp.getnFacilities();
-                        for(int f = 1; f <= pp.getnFacilities(); f++) {
-                            firstCutLHS.addTerm( pp.getUpperBoundProductExpectation(p), y[p - 1][f - 1][pp.getDistributionProductionLevels(p,d,f)]);
-                        }
-
-                        if (getPhi(p) <= expectedProfit + 1e-9) {
-                            //System.out.println("Node optimal.");
-                        }else{
-                            IloRange firstCut = add(model.le(firstCutLHS, firstCutRHS));
-                            nCuts++;
-                        }
-                    }
-                }
-            }
-            System.out.println("# cuts after cut loop "+nCuts);
-            long cbEnd = System.nanoTime();
-            totalCallbackTime = totalCallbackTime + (cbEnd-cbStart)/1e9;
-        }
-
-        private double[][][] getX() throws IloException {
-            double X[][][] = new double[pp.getnProducts()][pp.getnFacilities()][pp.getMaxnProductionLevels()];
-            for (int p = 1; p <= pp.getnProducts(); p++){
-                for(int f = 1; f <= pp.getnFacilities(); f++){
-                    for (int l = 1; l <= pp.getnProductionLevels(f, p); l++) {
-                        X[p - 1][f - 1][l-1] = getValue(x[p - 1][f - 1][l-1]);
-                    }
-                }
-            }
-            return X;
         }
 
-        private double[][][] getY() throws IloException {
-            double Y[][][] = new double[pp.getnProducts()][pp.getnFacilities()][pp.getMaxnProductionLevels()];
-            for (int p = 1; p <= pp.getnProducts(); p++){
-                for(int f = 1; f <= pp.getnFacilities(); f++){
-                    for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
-                        Y[p-1][f-1][l-1] = getValue(y[p-1][f-1][l-1]);
-                    }
-                }
-            }
-            return Y;
+        @Override
+        protected IloNumVar getQuantityVariable(int p, int d, int f) {
+            return x[p-1][f-1][pp.getDistributionProductionLevels(p,d,f)];
         }
 
-        private double getPhi(int p) throws IloException {
-            return getValue(phi[p-1]);
+        @Override
+        protected double getQuantityLevelWeight(int p, int d, int f) {
+            return 0;
         }
-
-
     }
 }
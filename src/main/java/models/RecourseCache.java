@@ -0,0 +1,156 @@
+package models;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of the evaluations of the recourse of a product.
+ * The same quantities are often evaluated many times during the branch-and-bound, e.g., for different candidate
+ * solutions sharing the plan of the product. The evaluations are stored by enforced distribution and quantities,
+ * the latter being rounded to a multiple of the quantum, and the least recently used one is evicted when the cache is full.
+ * Each entry keeps the exact quantities that produced its cut. Since the recourse is concave, the value of the cut at
+ * other quantities of the same key is only an upper bound on their expected profit, so that such an entry is only returned
+ * when this upper bound is below the profit required, i.e., when its cut rejects the solution. Otherwise the recourse
+ * must be evaluated, and the exact expected profit is only taken from an entry with the same quantities.
+ * The cache can be shared by several threads.
+ */
+public class RecourseCache {
+    private final int capacity;
+    private final double quantum;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final AtomicLong nHits = new AtomicLong();
+    private final AtomicLong nMisses = new AtomicLong();
+
+    /**
+     * Constructs an empty cache.
+     * @param capacity the maximum number of evaluations stored
+     * @param quantum the precision to which the quantities are rounded
+     */
+    public RecourseCache(int capacity, double quantum) {
+        if(capacity <= 0 || quantum <= 0){
+            throw new IllegalArgumentException("Invalid cache capacity or quantum");
+        }
+        this.capacity = capacity;
+        this.quantum = quantum;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > RecourseCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Creates one cache for each product.
+     * @param nProducts
+     * @param capacity the maximum number of evaluations stored for each product
+     * @param quantum the precision to which the quantities are rounded
+     * @return an array of caches [nProducts]
+     */
+    public static RecourseCache[] forAllProducts(int nProducts, int capacity, double quantum){
+        RecourseCache caches[] = new RecourseCache[nProducts];
+        for(int p = 1; p <= nProducts; p++){
+            caches[p-1] = new RecourseCache(capacity, quantum);
+        }
+        return caches;
+    }
+
+    /**
+     * Looks for the evaluation of the given distribution and quantities.
+     * An entry is found if it was produced by the same quantities, in which case the expected profit is exact,
+     * or if the value of its cut at the quantities, an upper bound on their expected profit, is below maxProfit.
+     * @param distribution the distribution enforced on the product
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param maxProfit the expected profit below which an upper bound rejects the solution
+     * @param evaluation the object where the evaluation found is copied
+     * @return true if the evaluation was found
+     */
+    public boolean lookup(int distribution, double quantities[], double maxProfit, RecourseEvaluation evaluation){
+        Key key = new Key(distribution, quantize(quantities));
+        boolean found = false;
+        synchronized (entries) {
+            Entry cached = entries.get(key);
+            if(cached != null){
+                found = Arrays.equals(cached.quantities, quantities) || cached.evaluation.getCutValue(quantities) < maxProfit;
+                if(found){
+                    evaluation.copyFrom(cached.evaluation, quantities);
+                }
+            }
+        }
+        if(!found){
+            nMisses.incrementAndGet();
+            return false;
+        }
+        nHits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores the evaluation of the given quantities.
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param evaluation
+     */
+    public void store(double quantities[], RecourseEvaluation evaluation){
+        Key key = new Key(evaluation.getDistribution(), quantize(quantities));
+        RecourseEvaluation copy = new RecourseEvaluation(quantities.length);
+        copy.copyFrom(evaluation, quantities);
+        Entry entry = new Entry(quantities.clone(), copy);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private long[] quantize(double quantities[]){
+        long quantized[] = new long[quantities.length];
+        for(int f = 1; f <= quantities.length; f++){
+            quantized[f-1] = Math.round(quantities[f-1] / quantum);
+        }
+        return quantized;
+    }
+
+    public long getnHits() {
+        return nHits.get();
+    }
+
+    public long getnMisses() {
+        return nMisses.get();
+    }
+
+    private static final class Entry {
+        private final double quantities[]; // The quantities that produced the cut [nFacilities]
+        private final RecourseEvaluation evaluation;
+
+        private Entry(double quantities[], RecourseEvaluation evaluation) {
+            this.quantities = quantities;
+            this.evaluation = evaluation;
+        }
+    }
+
+    private static final class Key {
+        private final int distribution;
+        private final long quantities[];
+        private final int hash;
+
+        private Key(int distribution, long quantities[]) {
+            this.distribution = distribution;
+            this.quantities = quantities;
+            this.hash = 31 * distribution + Arrays.hashCode(quantities);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return distribution == other.distribution && Arrays.equals(quantities, other.quantities);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
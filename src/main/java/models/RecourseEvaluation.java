@@ -0,0 +1,85 @@
+package models;
+
+/**
+ * Stores the outcome of the evaluation of the recourse of a product under a given distribution,
+ * that is, the expected second-stage profit and the aggregated coefficients of the corresponding optimality cut
+ *    phi_p <= cutConstant + sum_f cutCoefficient_f * q_f
+ * where q_f is the quantity of the product produced at facility f.
+ * An instance is meant to be reused across evaluations to avoid allocations in the callbacks.
+ */
+public class RecourseEvaluation {
+    private int distribution;
+    private double expectedProfit;
+    private double cutConstant;
+    private final double cutCoefficients[]; // [nFacilities]
+
+    public RecourseEvaluation(int nFacilities) {
+        this.cutCoefficients = new double[nFacilities];
+    }
+
+    /**
+     * Clears the evaluation before a new distribution is evaluated.
+     * @param distribution
+     */
+    void reset(int distribution){
+        this.distribution = distribution;
+        this.expectedProfit = 0;
+        this.cutConstant = 0;
+        for(int f = 1; f <= cutCoefficients.length; f++){
+            cutCoefficients[f-1] = 0;
+        }
+    }
+
+    void addScenario(double profit, double constant){
+        this.expectedProfit = this.expectedProfit + profit;
+        this.cutConstant = this.cutConstant + constant;
+    }
+
+    void addCutCoefficient(int facility, double coefficient){
+        cutCoefficients[facility-1] = cutCoefficients[facility-1] + coefficient;
+    }
+
+    /**
+     * Copies the cut of another evaluation and sets the expected profit to the value of the cut at the given quantities.
+     * @param other
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     */
+    void copyFrom(RecourseEvaluation other, double quantities[]){
+        this.distribution = other.distribution;
+        this.cutConstant = other.cutConstant;
+        for(int f = 1; f <= cutCoefficients.length; f++){
+            cutCoefficients[f-1] = other.cutCoefficients[f-1];
+        }
+        this.expectedProfit = getCutValue(quantities);
+    }
+
+    /**
+     * Computes the value of the cut at the given quantities, which is an upper bound on their expected profit since
+     * the recourse is concave, and equal to it at the quantities evaluated.
+     * @param quantities the quantity produced at each facility [nFacilities]
+     * @return
+     */
+    double getCutValue(double quantities[]){
+        double value = cutConstant;
+        for(int f = 1; f <= cutCoefficients.length; f++){
+            value = value + cutCoefficients[f-1] * quantities[f-1];
+        }
+        return value;
+    }
+
+    public int getDistribution() {
+        return distribution;
+    }
+
+    public double getExpectedProfit() {
+        return expectedProfit;
+    }
+
+    public double getCutConstant() {
+        return cutConstant;
+    }
+
+    public double getCutCoefficient(int facility) {
+        return cutCoefficients[facility-1];
+    }
+}
@@ -0,0 +1,210 @@
+package models;
+
+import problems.ProductionPlanningProblemWithSalvageRevenue;
+import problems.ScenarioStore;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates the second-stage problem of a given product, for any of its distributions.
+ * The demand scenarios are shared by all distributions of the product. Therefore, the demands are sorted once
+ * and the prefix sums of the probabilities and of the probability-weighted demands are stored.
+ * For a given yield scenario, the expected sales E[min(totalProduction,demand)] over all demand scenarios
+ * are then obtained with a binary search, rather than by visiting every (yield,demand) scenario.
+ * The evaluator is immutable and can be shared by several threads.
+ */
+public class RecourseEvaluator {
+    private final ProductionPlanningProblemWithSalvageRevenue pp;
+    private final ScenarioStore scenarios; // Accessed with zero-based indices in the loops over the yield scenarios
+    private final int p;
+    private final double sortedDemands[]; // The demand realizations sorted in increasing order [nDemandScenarios]
+    private final double cumulativeProbabilities[]; // The probability of the k lowest demands [nDemandScenarios+1]
+    private final double cumulativeDemands[]; // The sum of probability times demand of the k lowest demands [nDemandScenarios+1]
+
+    /**
+     * Constructs the evaluator for the given product.
+     * @param p the product
+     * @param pp an instance of the production planning problem
+     */
+    public RecourseEvaluator(int p, ProductionPlanningProblemWithSalvageRevenue pp) {
+        this.pp = pp;
+        this.scenarios = pp.getScenarioStore();
+        this.p = p;
+        int nDemandScenarios = pp.getnDemandScenarios(p);
+
+        // Sorts the demand scenarios by increasing demand
+        Integer order[] = new Integer[nDemandScenarios];
+        for(int sd = 1; sd <= nDemandScenarios; sd++){
+            order[sd-1] = sd;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(pp.getDemandScenarioRealization(p,a), pp.getDemandScenarioRealization(p,b)));
+
+        this.sortedDemands = new double[nDemandScenarios];
+        this.cumulativeProbabilities = new double[nDemandScenarios+1];
+        this.cumulativeDemands = new double[nDemandScenarios+1];
+        for(int k = 1; k <= nDemandScenarios; k++){
+            int sd = order[k-1];
+            sortedDemands[k-1] = pp.getDemandScenarioRealization(p,sd);
+            cumulativeProbabilities[k] = cumulativeProbabilities[k-1] + pp.getDemandScenarioProbability(p,sd);
+            cumulativeDemands[k] = cumulativeDemands[k-1] + pp.getDemandScenarioProbability(p,sd) * sortedDemands[k-1];
+        }
+    }
+
+    /**
+     * Creates one evaluator for each product of the problem.
+     * @param pp an instance of the production planning problem
+     * @return an array of evaluators [nProducts]
+     */
+    public static RecourseEvaluator[] forAllProducts(ProductionPlanningProblemWithSalvageRevenue pp){
+        RecourseEvaluator evaluators[] = new RecourseEvaluator[pp.getnProducts()];
+        for(int p = 1; p <= pp.getnProducts(); p++){
+            evaluators[p-1] = new RecourseEvaluator(p, pp);
+        }
+        return evaluators;
+    }
+
+    /**
+     * Returns the number of demand scenarios whose demand does not exceed the total production,
+     * i.e., the demand scenarios in which the demand is entirely satisfied.
+     * @param totalProduction
+     * @return
+     */
+    private int countSatisfiedDemands(double totalProduction){
+        int low = 0;
+        int high = sortedDemands.length;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(sortedDemands[mid] <= totalProduction){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of demand scenarios whose demand is lower than the total production, excluding
+     * the demands that are equal to it up to the tolerance.
+     * @param totalProduction
+     * @param tolerance
+     * @return
+     */
+    private int countStrictlySatisfiedDemands(double totalProduction, double tolerance){
+        int low = 0;
+        int high = sortedDemands.length;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(sortedDemands[mid] < totalProduction - tolerance){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes the total production realized in a yield scenario.
+     * @param distribution the distribution enforced on the product
+     * @param yieldScenario the yield scenario
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @return
+     */
+    public double getTotalProduction(int distribution, int yieldScenario, double quantities[]){
+        return scenarios.getTotalProduction(p-1,distribution-1,yieldScenario-1,quantities);
+    }
+
+    /**
+     * Computes the expected second-stage profit of the product under the given distribution and
+     * stores in the evaluation the coefficients of the corresponding optimality cut.
+     * @param distribution the distribution enforced on the product
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param evaluation the object where the results are stored
+     * @return the expected profit
+     */
+    public double evaluate(int distribution, double quantities[], RecourseEvaluation evaluation){
+        return evaluate(distribution, quantities, null, evaluation);
+    }
+
+    /**
+     * Computes the expected second-stage profit of the product under the given distribution and
+     * stores in the evaluation the coefficients of a Pareto-optimal cut (Magnanti and Wong) with respect to the core point.
+     * In a demand scenario whose demand equals the total production, both the demand and the production can
+     * be considered sold, which gives the same profit but different cuts. Among them, the cut with the
+     * lowest value at the core point is chosen, that is, the demand is considered satisfied if it does not exceed
+     * the total production at the core point.
+     * If the core point is null, demands equal to the production are considered satisfied.
+     * @param distribution the distribution enforced on the product
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param coreQuantities the quantity of the product produced at each facility in the core point [nFacilities]
+     * @param evaluation the object where the results are stored
+     * @return the expected profit
+     */
+    public double evaluate(int distribution, double quantities[], double coreQuantities[], RecourseEvaluation evaluation){
+        evaluation.reset(distribution);
+        double totalProbability = cumulativeProbabilities[sortedDemands.length];
+        for(int sy = 1; sy <= scenarios.getnYieldScenarios(p-1,distribution-1); sy++){
+            double probability = scenarios.getYieldScenarioProbability(p-1,distribution-1,sy-1);
+            double totalProduction = getTotalProduction(distribution,sy,quantities);
+
+            // Demand scenarios with demand lower than the production sell the demand, the others the whole production
+            int k = countSatisfiedDemands(totalProduction);
+            if(coreQuantities != null){
+                // The demands equal to the production are satisfied only if they are satisfied at the core point
+                double tolerance = 1e-9 * Math.max(1, Math.abs(totalProduction));
+                int kLow = countStrictlySatisfiedDemands(totalProduction, tolerance);
+                int kHigh = countSatisfiedDemands(totalProduction + tolerance);
+                if(kLow < kHigh) {
+                    int kCore = countSatisfiedDemands(getTotalProduction(distribution, sy, coreQuantities));
+                    k = Math.max(kLow, Math.min(kHigh, kCore));
+                }
+            }
+            double satisfiedProbability = cumulativeProbabilities[k];
+            double satisfiedDemand = cumulativeDemands[k];
+            double unsatisfiedProbability = totalProbability - satisfiedProbability;
+
+            // The profit is linear in the total production, given the set of satisfied demands
+            double constant = (pp.getSalesPrice(p) - pp.getLeftoverCosts(p)) * satisfiedDemand;
+            double slope = pp.getLeftoverCosts(p) * satisfiedProbability + pp.getSalesPrice(p) * unsatisfiedProbability;
+            evaluation.addScenario(probability * (constant + slope * totalProduction), probability * constant);
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                evaluation.addCutCoefficient(f, probability * slope * scenarios.getYield(p-1,distribution-1,sy-1,f-1));
+            }
+        }
+        return evaluation.getExpectedProfit();
+    }
+
+    /**
+     * Computes the sales in each scenario of the given distribution.
+     * @param distribution the distribution enforced on the product
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param sales the array where the sales are stored [nScenarios]
+     */
+    public void computeSales(int distribution, double quantities[], double sales[]){
+        int nDemandScenarios = pp.getnDemandScenarios(p);
+        for(int sy = 1; sy <= pp.getnYieldScenarios(p,distribution); sy++){
+            double totalProduction = getTotalProduction(distribution,sy,quantities);
+            for(int sd = 1; sd <= nDemandScenarios; sd++){
+                sales[(sy-1) * nDemandScenarios + sd - 1] = Math.min(totalProduction,pp.getDemandScenarioRealization(p,sd));
+            }
+        }
+    }
+
+    /**
+     * Computes the oversupply in each scenario of the given distribution.
+     * @param distribution the distribution enforced on the product
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @param oversupply the array where the oversupply is stored [nScenarios]
+     */
+    public void computeOversupply(int distribution, double quantities[], double oversupply[]){
+        int nDemandScenarios = pp.getnDemandScenarios(p);
+        for(int sy = 1; sy <= pp.getnYieldScenarios(p,distribution); sy++){
+            double totalProduction = getTotalProduction(distribution,sy,quantities);
+            for(int sd = 1; sd <= nDemandScenarios; sd++){
+                oversupply[(sy-1) * nDemandScenarios + sd - 1] = totalProduction - Math.min(totalProduction,pp.getDemandScenarioRealization(p,sd));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package problems;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+
+/**
+ * Stores the scenarios in flat arrays without padding.
+ * The yield scenarios of all products and distributions are stored one after the other: those of product p and
+ * distribution d start at yieldScenarioOffsets[p][d]. The yields are stored scenario-major, i.e., the yields of
+ * the facilities in a scenario are contiguous, so that the loops computing the production of a scenario are stride-1.
+ * The subclasses store the yields and the demands in double or single precision, or off-heap, while the probabilities are always in double precision.
+ * All indices are zero-based.
+ */
+public abstract class ArrayScenarioStore implements ScenarioStore {
+    protected final int nFacilities;
+    protected final int yieldScenarioOffsets[][]; // The position of the first yield scenario of each distribution [nProducts][nDistributions+1]
+    protected final int nYieldScenariosTotal; // The number of yield scenarios over all products and distributions
+    protected final double yieldScenarioProbabilities[]; // [nYieldScenariosTotal], null if the subclass stores the probabilities
+    protected final int demandScenarioOffsets[]; // The position of the first demand scenario of each product [nProducts+1]
+    protected final double demandScenarioProbabilities[]; // [nDemandScenariosTotal]
+
+    /**
+     * Allocates the store. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     */
+    protected ArrayScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][]) {
+        this(nFacilities, nYieldScenarios, demandScenarioProbabilities, true);
+    }
+
+    /**
+     * Allocates the store. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param heapProbabilities whether the probabilities of the yield scenarios are stored on the heap, otherwise the subclass stores them
+     */
+    protected ArrayScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], boolean heapProbabilities) {
+        int nProducts = nYieldScenarios.length;
+        this.nFacilities = nFacilities;
+        this.yieldScenarioOffsets = new int[nProducts][];
+        int nYieldScenariosTotal = 0;
+        for(int p = 0; p < nProducts; p++){
+            yieldScenarioOffsets[p] = new int[nYieldScenarios[p].length + 1];
+            for(int d = 0; d < nYieldScenarios[p].length; d++){
+                yieldScenarioOffsets[p][d] = nYieldScenariosTotal;
+                nYieldScenariosTotal = nYieldScenariosTotal + nYieldScenarios[p][d];
+            }
+            yieldScenarioOffsets[p][nYieldScenarios[p].length] = nYieldScenariosTotal;
+        }
+        this.nYieldScenariosTotal = nYieldScenariosTotal;
+        this.yieldScenarioProbabilities = heapProbabilities ? new double[nYieldScenariosTotal] : null;
+
+        this.demandScenarioOffsets = new int[nProducts + 1];
+        for(int p = 0; p < nProducts; p++){
+            demandScenarioOffsets[p+1] = demandScenarioOffsets[p] + demandScenarioProbabilities[p].length;
+        }
+        this.demandScenarioProbabilities = new double[demandScenarioOffsets[nProducts]];
+        for(int p = 0; p < nProducts; p++){
+            System.arraycopy(demandScenarioProbabilities[p], 0, this.demandScenarioProbabilities, demandScenarioOffsets[p], demandScenarioProbabilities[p].length);
+        }
+    }
+
+    /**
+     * Allocates a store in double or single precision, on the heap or off-heap. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param demandScenarioRealizations the demand of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param singlePrecision whether the yields and the demands are stored in single precision
+     * @param offHeap whether the yield scenarios are stored off-heap, which is only available in double precision
+     * @return
+     * @throws IOException if the off-heap memory cannot be mapped
+     */
+    public static ArrayScenarioStore create(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], double demandScenarioRealizations[][],
+                                            boolean singlePrecision, boolean offHeap) throws IOException {
+        if(offHeap){
+            if(singlePrecision){
+                throw new IllegalArgumentException("The off-heap store is only available in double precision");
+            }
+            return new OffHeapScenarioStore(nFacilities, nYieldScenarios, demandScenarioProbabilities, demandScenarioRealizations);
+        }
+        if(singlePrecision){
+            return new FloatScenarioStore(nFacilities, nYieldScenarios, demandScenarioProbabilities, demandScenarioRealizations);
+        }
+        return new DoubleScenarioStore(nFacilities, nYieldScenarios, demandScenarioProbabilities, demandScenarioRealizations);
+    }
+
+    /**
+     * Sets the probability and the yields of a yield scenario.
+     * @param product
+     * @param distribution
+     * @param yieldScenario
+     * @param probability
+     * @param yields the yield at each facility [nFacilities]
+     */
+    public void setYieldScenario(int product, int distribution, int yieldScenario, double probability, double yields[]){
+        setYieldScenario(yieldScenarioOffsets[product][distribution] + yieldScenario, probability, yields);
+    }
+
+    /**
+     * Sets the probability and the yields of a yield scenario given by its position in the store,
+     * i.e., its rank in the order by product, distribution and yield scenario.
+     * @param position
+     * @param probability
+     * @param yields the yield at each facility [nFacilities]
+     */
+    public void setYieldScenario(int position, double probability, double yields[]){
+        yieldScenarioProbabilities[position] = probability;
+        setYields(position * nFacilities, DoubleBuffer.wrap(yields, 0, nFacilities));
+    }
+
+    /**
+     * Copies consecutive yield scenario probabilities, in the order of the store, i.e., by product, distribution and yield scenario.
+     * @param first the position in the store of the first probability copied
+     * @param probabilities the probabilities, all of which are copied
+     */
+    public void setYieldScenarioProbabilities(int first, DoubleBuffer probabilities){
+        probabilities.get(this.yieldScenarioProbabilities, first, probabilities.remaining());
+    }
+
+    /**
+     * Copies consecutive yields, in the order of the store, i.e., by yield scenario and facility.
+     * @param first the position in the store of the first yield copied
+     * @param yields the yields, all of which are copied
+     */
+    public abstract void setYields(int first, DoubleBuffer yields);
+
+    /**
+     * Returns the total number of yield scenarios over all products and distributions.
+     * @return
+     */
+    public int getnYieldScenariosTotal() {
+        return nYieldScenariosTotal;
+    }
+
+    @Override
+    public int getnFacilities() {
+        return nFacilities;
+    }
+
+    @Override
+    public int getnProducts() {
+        return yieldScenarioOffsets.length;
+    }
+
+    @Override
+    public int getnDistributions(int product) {
+        return yieldScenarioOffsets[product].length - 1;
+    }
+
+    @Override
+    public int getnYieldScenarios(int product, int distribution) {
+        return yieldScenarioOffsets[product][distribution+1] - yieldScenarioOffsets[product][distribution];
+    }
+
+    @Override
+    public double getYieldScenarioProbability(int product, int distribution, int yieldScenario) {
+        return yieldScenarioProbabilities[yieldScenarioOffsets[product][distribution] + yieldScenario];
+    }
+
+    @Override
+    public int getnDemandScenarios(int product) {
+        return demandScenarioOffsets[product+1] - demandScenarioOffsets[product];
+    }
+
+    @Override
+    public double getDemandScenarioProbability(int product, int demandScenario) {
+        return demandScenarioProbabilities[demandScenarioOffsets[product] + demandScenario];
+    }
+}
@@ -0,0 +1,124 @@
+package problems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Enumerates the minimal covers of the capacity of a facility, i.e., the sets of production levels of distinct products
+ * whose lower bounds exceed the capacity, and that no longer exceed it when any level is removed.
+ * The levels with a positive lower bound are sorted by decreasing lower bound, and the covers are enumerated by a depth-first
+ * search that adds the levels in this order and stops as soon as the capacity is exceeded: the last level added is then
+ * the lightest, so every cover found is minimal, and every cover is found once. The search is pruned when the levels left
+ * cannot exceed the capacity, using the sum over the products of their heaviest remaining level.
+ * The first cover found is the greedy one, made of the heaviest levels, which has the fewest levels.
+ */
+class CoverEnumerator {
+    private final double capacity;
+    private final int maxCovers;
+    private final int products[]; // The product of each level, sorted by decreasing lower bound [nLevels]
+    private final int levels[]; // The level, from 1 [nLevels]
+    private final double weights[]; // The lower bound of the level [nLevels]
+    private final double remainingWeights[]; // The sum over the products of their heaviest level from each position on [nLevels+1]
+    private final boolean used[]; // Whether the product is in the current set [nProducts]
+    private final int selected[]; // The positions of the levels in the current set [nProducts]
+    private final List<Cover> covers = new ArrayList<>();
+
+    /**
+     * Prepares the enumeration of the minimal covers of the given facility.
+     * @param pp
+     * @param facility
+     * @param maxCovers the largest number of covers enumerated
+     */
+    CoverEnumerator(ProductionPlanningProblem pp, int facility, int maxCovers) {
+        this.capacity = pp.getTotalCapacity(facility);
+        this.maxCovers = maxCovers;
+        int nProducts = pp.getnProducts();
+        int nLevels = 0;
+        for(int p = 1; p <= nProducts; p++){
+            nLevels = nLevels + pp.getnProductionLevels(facility,p);
+        }
+        // Sorts the levels with a positive lower bound by decreasing lower bound
+        double allWeights[] = new double[nLevels];
+        int allProducts[] = new int[nLevels];
+        int allLevels[] = new int[nLevels];
+        int n = 0;
+        for(int p = 1; p <= nProducts; p++){
+            for(int l = 1; l <= pp.getnProductionLevels(facility,p); l++){
+                double weight = pp.getProductionLevelLowerBound(facility,p,l);
+                if(weight > 0){
+                    allWeights[n] = weight;
+                    allProducts[n] = p;
+                    allLevels[n] = l;
+                    n++;
+                }
+            }
+        }
+        Integer order[] = new Integer[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(allWeights[j], allWeights[i]));
+        this.products = new int[n];
+        this.levels = new int[n];
+        this.weights = new double[n];
+        for(int i = 0; i < n; i++){
+            products[i] = allProducts[order[i]];
+            levels[i] = allLevels[order[i]];
+            weights[i] = allWeights[order[i]];
+        }
+
+        // Since the levels are sorted, the first level of a product met from the end on is its heaviest so far
+        this.remainingWeights = new double[n + 1];
+        double heaviest[] = new double[nProducts];
+        for(int i = n - 1; i >= 0; i--){
+            remainingWeights[i] = remainingWeights[i + 1] - heaviest[products[i]-1] + weights[i];
+            heaviest[products[i]-1] = weights[i];
+        }
+        this.used = new boolean[nProducts];
+        this.selected = new int[nProducts];
+    }
+
+    /**
+     * Enumerates the minimal covers.
+     * @return at most maxCovers distinct minimal covers, the one with the fewest levels first
+     */
+    List<Cover> enumerate() {
+        covers.clear();
+        if(maxCovers > 0){
+            search(0, 0, 0);
+        }
+        return covers;
+    }
+
+    /**
+     * Extends the current set with the levels from the given position on.
+     * @param first the first position that can be added
+     * @param nSelected the number of levels in the current set
+     * @param weight the total lower bound of the current set, which does not exceed the capacity
+     */
+    private void search(int first, int nSelected, double weight) {
+        for(int i = first; i < weights.length && covers.size() < maxCovers; i++){
+            // The levels left cannot exceed the capacity, and neither can the levels after them
+            if(weight + remainingWeights[i] <= capacity){
+                return;
+            }
+            if(used[products[i]-1]){
+                continue;
+            }
+            selected[nSelected] = i;
+            if(weight + weights[i] > capacity){
+                HashMap<Integer,Integer> coverLevels = new HashMap<>();
+                for(int s = 0; s <= nSelected; s++){
+                    coverLevels.put(products[selected[s]], levels[selected[s]]);
+                }
+                covers.add(new Cover(coverLevels, weight + weights[i]));
+            } else {
+                used[products[i]-1] = true;
+                search(i + 1, nSelected + 1, weight + weights[i]);
+                used[products[i]-1] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package problems;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Stores the yields and the demands in double precision.
+ */
+public class DoubleScenarioStore extends ArrayScenarioStore {
+    private final double yields[]; // The yield of each yield scenario and facility [nYieldScenariosTotal * nFacilities]
+    private final double demands[]; // [nDemandScenariosTotal]
+
+    /**
+     * Allocates the store. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param demandScenarioRealizations the demand of each demand scenario of each product [nProducts][nDemandScenarios]
+     */
+    public DoubleScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], double demandScenarioRealizations[][]) {
+        super(nFacilities, nYieldScenarios, demandScenarioProbabilities);
+        this.yields = new double[getnYieldScenariosTotal() * nFacilities];
+        this.demands = new double[demandScenarioOffsets[demandScenarioOffsets.length - 1]];
+        for(int p = 0; p < demandScenarioRealizations.length; p++){
+            System.arraycopy(demandScenarioRealizations[p], 0, this.demands, demandScenarioOffsets[p], demandScenarioRealizations[p].length);
+        }
+    }
+
+    @Override
+    public void setYields(int first, DoubleBuffer yields){
+        yields.get(this.yields, first, yields.remaining());
+    }
+
+    @Override
+    public long getScenarioBytes() {
+        return (long) Double.BYTES * (yields.length + demands.length);
+    }
+
+    @Override
+    public double getYield(int product, int distribution, int yieldScenario, int facility) {
+        return yields[(yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities + facility];
+    }
+
+    @Override
+    public double getTotalProduction(int product, int distribution, int yieldScenario, double quantities[]) {
+        int start = (yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities;
+        double totalProduction = 0;
+        for(int f = 0; f < nFacilities; f++){
+            totalProduction = totalProduction + yields[start + f] * quantities[f];
+        }
+        return totalProduction;
+    }
+
+    @Override
+    public double getDemand(int product, int demandScenario) {
+        return demands[demandScenarioOffsets[product] + demandScenario];
+    }
+}
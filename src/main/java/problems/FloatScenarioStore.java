@@ -0,0 +1,64 @@
+package problems;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Stores the yields and the demands in single precision, which halves the memory they use.
+ * The values are rounded to the nearest float when they are stored, and all computations are carried out in double precision.
+ * The relative error on each yield and demand is therefore at most 2^-24 (about 6e-8).
+ */
+public class FloatScenarioStore extends ArrayScenarioStore {
+    private final float yields[]; // The yield of each yield scenario and facility [nYieldScenariosTotal * nFacilities]
+    private final float demands[]; // [nDemandScenariosTotal]
+
+    /**
+     * Allocates the store. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param demandScenarioRealizations the demand of each demand scenario of each product [nProducts][nDemandScenarios]
+     */
+    public FloatScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], double demandScenarioRealizations[][]) {
+        super(nFacilities, nYieldScenarios, demandScenarioProbabilities);
+        this.yields = new float[getnYieldScenariosTotal() * nFacilities];
+        this.demands = new float[demandScenarioOffsets[demandScenarioOffsets.length - 1]];
+        for(int p = 0; p < demandScenarioRealizations.length; p++){
+            for(int sd = 0; sd < demandScenarioRealizations[p].length; sd++){
+                demands[demandScenarioOffsets[p] + sd] = (float) demandScenarioRealizations[p][sd];
+            }
+        }
+    }
+
+    @Override
+    public void setYields(int first, DoubleBuffer yields){
+        int n = yields.remaining();
+        for(int i = 0; i < n; i++){
+            this.yields[first + i] = (float) yields.get();
+        }
+    }
+
+    @Override
+    public long getScenarioBytes() {
+        return (long) Float.BYTES * (yields.length + demands.length);
+    }
+
+    @Override
+    public double getYield(int product, int distribution, int yieldScenario, int facility) {
+        return yields[(yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities + facility];
+    }
+
+    @Override
+    public double getTotalProduction(int product, int distribution, int yieldScenario, double quantities[]) {
+        int start = (yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities;
+        double totalProduction = 0;
+        for(int f = 0; f < nFacilities; f++){
+            totalProduction = totalProduction + yields[start + f] * quantities[f];
+        }
+        return totalProduction;
+    }
+
+    @Override
+    public double getDemand(int product, int demandScenario) {
+        return demands[demandScenarioOffsets[product] + demandScenario];
+    }
+}
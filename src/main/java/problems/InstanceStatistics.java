@@ -0,0 +1,226 @@
+package problems;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Statistics of an instance of the production planning problem that are used repeatedly when the models are built,
+ * e.g., the highest yields and demands in the valid inequalities and the upper bounds in the optimality cuts.
+ * They are computed once, when the problem is constructed, and stored in primitive tables.
+ * The products are independent and are processed in parallel.
+ * All tables are zero-based; the getters of ProductionPlanningProblem shift the indices.
+ * Since they only depend on the data, the statistics can be written to a cache and read back instead of being recomputed.
+ */
+public class InstanceStatistics {
+    final double highestYield[][][]; // The highest yield of each distribution at each facility [nProducts][nDistributions][nFacilities]
+    final double expectedYield[][][]; // The expected yield of each distribution at each facility [nProducts][nDistributions][nFacilities]
+    final double highestYieldOfProduct[][]; // The highest yield over all distributions [nProducts][nFacilities]
+    final double highestExpectedYield[][]; // The highest expected yield over all distributions [nProducts][nFacilities]
+    final double highestYieldForLevel[][][]; // The highest yield over the distributions enforcing each level [nProducts][nFacilities][nProductionLevels]
+    final double highestYieldOfFacility[]; // The highest yield over all products [nFacilities]
+    final double highestDemand[][]; // The highest demand of each distribution [nProducts][nDistributions]
+    final double highestDemandOfProduct[]; // The highest demand over all distributions [nProducts]
+    final double highestSellingPrice;
+    final double upperBoundOnProductionRealization[][][]; // The maximum production of each yield scenario [nProducts][nDistributions][nYieldScenarios]
+    final double upperBoundOnProductExpectation[]; // An upper bound on the highest profit expectation [nProducts]
+
+    /**
+     * Computes the statistics of the given problem.
+     * The problem must be able to compute its bounds from the data alone, since its statistics are not yet available.
+     * @param pp an instance of the production planning problem
+     */
+    InstanceStatistics(ProductionPlanningProblem pp) {
+        int nProducts = pp.getnProducts();
+        int nFacilities = pp.getnFacilities();
+        this.highestYield = new double[nProducts][][];
+        this.expectedYield = new double[nProducts][][];
+        this.highestYieldOfProduct = new double[nProducts][nFacilities];
+        this.highestExpectedYield = new double[nProducts][nFacilities];
+        this.highestYieldForLevel = new double[nProducts][nFacilities][];
+        this.highestDemand = new double[nProducts][];
+        this.highestDemandOfProduct = new double[nProducts];
+        this.upperBoundOnProductionRealization = new double[nProducts][][];
+        this.upperBoundOnProductExpectation = new double[nProducts];
+
+        IntStream.rangeClosed(1, nProducts).parallel().forEach(p -> computeProductStatistics(pp, p));
+
+        // The statistics over all products
+        this.highestYieldOfFacility = new double[nFacilities];
+        for(int f = 1; f <= nFacilities; f++){
+            highestYieldOfFacility[f-1] = Double.NEGATIVE_INFINITY;
+            for(int p = 1; p <= nProducts; p++){
+                highestYieldOfFacility[f-1] = Math.max(highestYieldOfFacility[f-1], highestYieldOfProduct[p-1][f-1]);
+            }
+        }
+        double highestSellingPrice = Double.NEGATIVE_INFINITY;
+        for(int p = 1; p <= nProducts; p++){
+            highestSellingPrice = Math.max(highestSellingPrice, pp.getSalesPrice(p));
+        }
+        this.highestSellingPrice = highestSellingPrice;
+    }
+
+    private InstanceStatistics(ByteBuffer buffer) {
+        this.highestYield = readArray3(buffer);
+        this.expectedYield = readArray3(buffer);
+        this.highestYieldOfProduct = readArray2(buffer);
+        this.highestExpectedYield = readArray2(buffer);
+        this.highestYieldForLevel = readArray3(buffer);
+        this.highestYieldOfFacility = readArray(buffer);
+        this.highestDemand = readArray2(buffer);
+        this.highestDemandOfProduct = readArray(buffer);
+        this.highestSellingPrice = buffer.getDouble();
+        this.upperBoundOnProductionRealization = readArray3(buffer);
+        this.upperBoundOnProductExpectation = readArray(buffer);
+    }
+
+    /**
+     * Writes the tables. Each array is preceded by its length, so that the tables can be read without the problem.
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutputStream out) throws IOException {
+        writeArray(out, highestYield);
+        writeArray(out, expectedYield);
+        writeArray(out, highestYieldOfProduct);
+        writeArray(out, highestExpectedYield);
+        writeArray(out, highestYieldForLevel);
+        writeArray(out, highestYieldOfFacility);
+        writeArray(out, highestDemand);
+        writeArray(out, highestDemandOfProduct);
+        out.writeDouble(highestSellingPrice);
+        writeArray(out, upperBoundOnProductionRealization);
+        writeArray(out, upperBoundOnProductExpectation);
+    }
+
+    /**
+     * Reads tables written by write.
+     * @param buffer the buffer positioned at the beginning of the tables
+     * @return
+     */
+    public static InstanceStatistics read(ByteBuffer buffer) {
+        return new InstanceStatistics(buffer);
+    }
+
+    private static void writeArray(DataOutputStream out, double array[]) throws IOException {
+        out.writeInt(array.length);
+        for(double value : array){
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, double array[][]) throws IOException {
+        out.writeInt(array.length);
+        for(double row[] : array){
+            writeArray(out, row);
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, double array[][][]) throws IOException {
+        out.writeInt(array.length);
+        for(double row[][] : array){
+            writeArray(out, row);
+        }
+    }
+
+    private static double[] readArray(ByteBuffer buffer) {
+        double array[] = new double[buffer.getInt()];
+        buffer.asDoubleBuffer().get(array);
+        buffer.position(buffer.position() + Double.BYTES * array.length);
+        return array;
+    }
+
+    private static double[][] readArray2(ByteBuffer buffer) {
+        double array[][] = new double[buffer.getInt()][];
+        for(int i = 0; i < array.length; i++){
+            array[i] = readArray(buffer);
+        }
+        return array;
+    }
+
+    private static double[][][] readArray3(ByteBuffer buffer) {
+        double array[][][] = new double[buffer.getInt()][][];
+        for(int i = 0; i < array.length; i++){
+            array[i] = readArray2(buffer);
+        }
+        return array;
+    }
+
+    /**
+     * Fills the rows of the tables of the given product.
+     * @param pp
+     * @param p
+     */
+    private void computeProductStatistics(ProductionPlanningProblem pp, int p){
+        ScenarioStore scenarios = pp.getScenarioStore();
+        int nFacilities = pp.getnFacilities();
+        int nDistributions = pp.getnDistributions(p);
+        int nDemandScenarios = scenarios.getnDemandScenarios(p-1);
+
+        // Demands, which are shared by all distributions
+        double highestProductDemand = Double.NEGATIVE_INFINITY;
+        double totalDemandProbability = 0;
+        for(int sd = 0; sd < nDemandScenarios; sd++){
+            highestProductDemand = Math.max(highestProductDemand, scenarios.getDemand(p-1,sd));
+            totalDemandProbability = totalDemandProbability + scenarios.getDemandScenarioProbability(p-1,sd);
+        }
+
+        highestYield[p-1] = new double[nDistributions][nFacilities];
+        expectedYield[p-1] = new double[nDistributions][nFacilities];
+        highestDemand[p-1] = new double[nDistributions];
+        upperBoundOnProductionRealization[p-1] = new double[nDistributions][];
+        for(int d = 1; d <= nDistributions; d++){
+            int nYieldScenarios = scenarios.getnYieldScenarios(p-1,d-1);
+            double highest[] = highestYield[p-1][d-1];
+            double expected[] = expectedYield[p-1][d-1];
+            for(int f = 1; f <= nFacilities; f++){
+                highest[f-1] = Double.NEGATIVE_INFINITY;
+            }
+            for(int sy = 0; sy < nYieldScenarios; sy++){
+                double probability = scenarios.getYieldScenarioProbability(p-1,d-1,sy);
+                for(int f = 1; f <= nFacilities; f++){
+                    double yield = scenarios.getYield(p-1,d-1,sy,f-1);
+                    highest[f-1] = Math.max(highest[f-1], yield);
+                    expected[f-1] = expected[f-1] + probability * yield;
+                }
+            }
+            for(int f = 1; f <= nFacilities; f++){
+                // A distribution without demand scenario has no scenario at all
+                if(nDemandScenarios == 0){
+                    highest[f-1] = Double.NEGATIVE_INFINITY;
+                }
+                // The demand scenarios multiply the probabilities of the yield scenarios
+                expected[f-1] = expected[f-1] * totalDemandProbability;
+            }
+            highestDemand[p-1][d-1] = nYieldScenarios == 0 ? Double.NEGATIVE_INFINITY : highestProductDemand;
+
+            upperBoundOnProductionRealization[p-1][d-1] = new double[nYieldScenarios];
+            for(int sy = 1; sy <= nYieldScenarios; sy++){
+                upperBoundOnProductionRealization[p-1][d-1][sy-1] = pp.computeUpperBoundOnProductionRealization(p,d,sy);
+            }
+        }
+        upperBoundOnProductExpectation[p-1] = pp.computeUpperBoundProductExpectation(p, upperBoundOnProductionRealization[p-1]);
+
+        // Highest values over the distributions
+        highestDemandOfProduct[p-1] = Double.NEGATIVE_INFINITY;
+        for(int d = 1; d <= nDistributions; d++){
+            highestDemandOfProduct[p-1] = Math.max(highestDemandOfProduct[p-1], highestDemand[p-1][d-1]);
+        }
+        for(int f = 1; f <= nFacilities; f++){
+            highestYieldOfProduct[p-1][f-1] = Double.NEGATIVE_INFINITY;
+            highestExpectedYield[p-1][f-1] = Double.NEGATIVE_INFINITY;
+            highestYieldForLevel[p-1][f-1] = new double[pp.getnProductionLevels(f,p)];
+            for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                highestYieldForLevel[p-1][f-1][l-1] = Double.NEGATIVE_INFINITY;
+            }
+            for(int d = 1; d <= nDistributions; d++){
+                highestYieldOfProduct[p-1][f-1] = Math.max(highestYieldOfProduct[p-1][f-1], highestYield[p-1][d-1][f-1]);
+                highestExpectedYield[p-1][f-1] = Math.max(highestExpectedYield[p-1][f-1], expectedYield[p-1][d-1][f-1]);
+                // The levels of the distributions are zero-based
+                int level = pp.getDistributionProductionLevels(p,d,f) + 1;
+                highestYieldForLevel[p-1][f-1][level-1] = Math.max(highestYieldForLevel[p-1][f-1][level-1], highestYield[p-1][d-1][f-1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package problems;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores the probabilities and the yields of the yield scenarios off-heap, in memory-mapped files, so that they neither
+ * count against the heap nor are visited by the garbage collector. The demands, which are few, are stored on the heap.
+ * The scenarios are either mapped from a temporary file, which is filled while the instance is read and deleted once
+ * the store is built, or mapped read-only from the yield scenarios of a binary instance file, without any copy.
+ * A single mapping holds at most 2GB, so the values are mapped in chunks of 2^27 doubles.
+ */
+public class OffHeapScenarioStore extends ArrayScenarioStore {
+    private static final int CHUNK_SHIFT = 27;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // The number of doubles in a chunk
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private final DoubleBuffer probabilities[]; // The probability of each yield scenario, by chunk
+    private final DoubleBuffer yields[]; // The yield of each yield scenario and facility, by chunk
+    private final double demands[]; // [nDemandScenariosTotal]
+
+    /**
+     * Allocates the store in a temporary file. The yield scenarios are then set with setYieldScenario.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param demandScenarioRealizations the demand of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @throws IOException
+     */
+    public OffHeapScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], double demandScenarioRealizations[][]) throws IOException {
+        super(nFacilities, nYieldScenarios, demandScenarioProbabilities, false);
+        Path file = Files.createTempFile("scenarios", ".tmp");
+        // The mappings remain valid once the file is closed and deleted
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)){
+            this.probabilities = map(channel, FileChannel.MapMode.READ_WRITE, 0, nYieldScenariosTotal, ByteOrder.nativeOrder());
+            this.yields = map(channel, FileChannel.MapMode.READ_WRITE, (long) Double.BYTES * nYieldScenariosTotal, (long) nYieldScenariosTotal * nFacilities, ByteOrder.nativeOrder());
+        }
+        this.demands = copyDemands(demandScenarioRealizations);
+    }
+
+    /**
+     * Maps the yield scenarios of a file, where they are stored in big-endian order as in ArrayScenarioStore:
+     * first the probabilities of all yield scenarios, then their yields. The store is read-only.
+     * @param nFacilities
+     * @param nYieldScenarios the number of yield scenarios of each product and distribution [nProducts][nDistributions]
+     * @param demandScenarioProbabilities the probability of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param demandScenarioRealizations the demand of each demand scenario of each product [nProducts][nDemandScenarios]
+     * @param channel the file
+     * @param position the position of the probabilities in the file
+     * @throws IOException
+     */
+    public OffHeapScenarioStore(int nFacilities, int nYieldScenarios[][], double demandScenarioProbabilities[][], double demandScenarioRealizations[][],
+                                FileChannel channel, long position) throws IOException {
+        super(nFacilities, nYieldScenarios, demandScenarioProbabilities, false);
+        this.probabilities = map(channel, FileChannel.MapMode.READ_ONLY, position, nYieldScenariosTotal, ByteOrder.BIG_ENDIAN);
+        this.yields = map(channel, FileChannel.MapMode.READ_ONLY, position + (long) Double.BYTES * nYieldScenariosTotal, (long) nYieldScenariosTotal * nFacilities, ByteOrder.BIG_ENDIAN);
+        this.demands = copyDemands(demandScenarioRealizations);
+    }
+
+    private double[] copyDemands(double demandScenarioRealizations[][]) {
+        double demands[] = new double[demandScenarioOffsets[demandScenarioOffsets.length - 1]];
+        for(int p = 0; p < demandScenarioRealizations.length; p++){
+            System.arraycopy(demandScenarioRealizations[p], 0, demands, demandScenarioOffsets[p], demandScenarioRealizations[p].length);
+        }
+        return demands;
+    }
+
+    private static DoubleBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long position, long nDoubles, ByteOrder order) throws IOException {
+        int nChunks = (int) ((nDoubles + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        DoubleBuffer chunks[] = new DoubleBuffer[nChunks];
+        for(int c = 0; c < nChunks; c++){
+            long first = (long) c << CHUNK_SHIFT;
+            long length = Math.min(CHUNK_SIZE, nDoubles - first);
+            chunks[c] = channel.map(mode, position + Double.BYTES * first, Double.BYTES * length).order(order).asDoubleBuffer();
+        }
+        return chunks;
+    }
+
+    private static double get(DoubleBuffer chunks[], long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    private static void put(DoubleBuffer chunks[], long index, double value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    @Override
+    public void setYieldScenario(int position, double probability, double yields[]){
+        put(probabilities, position, probability);
+        long start = (long) position * nFacilities;
+        for(int f = 0; f < nFacilities; f++){
+            put(this.yields, start + f, yields[f]);
+        }
+    }
+
+    @Override
+    public void setYieldScenarioProbabilities(int first, DoubleBuffer probabilities){
+        int n = probabilities.remaining();
+        for(int i = 0; i < n; i++){
+            put(this.probabilities, first + i, probabilities.get());
+        }
+    }
+
+    @Override
+    public void setYields(int first, DoubleBuffer yields){
+        int n = yields.remaining();
+        for(int i = 0; i < n; i++){
+            put(this.yields, (long) first + i, yields.get());
+        }
+    }
+
+    @Override
+    public long getScenarioBytes() {
+        return (long) Double.BYTES * ((long) nYieldScenariosTotal * nFacilities + demands.length);
+    }
+
+    @Override
+    public double getYieldScenarioProbability(int product, int distribution, int yieldScenario) {
+        return get(probabilities, yieldScenarioOffsets[product][distribution] + yieldScenario);
+    }
+
+    @Override
+    public double getYield(int product, int distribution, int yieldScenario, int facility) {
+        return get(yields, (long) (yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities + facility);
+    }
+
+    @Override
+    public double getTotalProduction(int product, int distribution, int yieldScenario, double quantities[]) {
+        long start = (long) (yieldScenarioOffsets[product][distribution] + yieldScenario) * nFacilities;
+        double totalProduction = 0;
+        int offset = (int) (start & CHUNK_MASK);
+        if(offset + nFacilities <= CHUNK_SIZE){
+            // The yields of the scenario are in a single chunk
+            DoubleBuffer chunk = yields[(int) (start >>> CHUNK_SHIFT)];
+            for(int f = 0; f < nFacilities; f++){
+                totalProduction = totalProduction + chunk.get(offset + f) * quantities[f];
+            }
+        } else {
+            for(int f = 0; f < nFacilities; f++){
+                totalProduction = totalProduction + get(yields, start + f) * quantities[f];
+            }
+        }
+        return totalProduction;
+    }
+
+    @Override
+    public double getDemand(int product, int demandScenario) {
+        return demands[demandScenarioOffsets[product] + demandScenario];
+    }
+}
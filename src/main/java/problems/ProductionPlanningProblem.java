@@ -5,19 +5,12 @@ import ilog.concert.IloIntVar;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.cplex.IloCplex;
-import org.jgrapht.*;
-import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
-import org.jgrapht.graph.*;
-import org.jgrapht.graph.DefaultWeightedEdge;
-import org.jgrapht.graph.SimpleDirectedWeightedGraph;
-import org.jgrapht.traverse.DepthFirstIterator;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 abstract public class ProductionPlanningProblem {
     protected final int nFacilities;
@@ -34,19 +27,31 @@ abstract public class ProductionPlanningProblem {
     protected final int nDistributions[]; // The number of distributions for each product [nProducts]
     protected final int maxNDistributions; // The highest number of distributions among the different products
     protected final int distributionProductionLevels[][][]; // Contains the level at a given facility corresponding to product p and distribution d [nProducts][nDistributions][nFacilities]
+    protected final int distributionStrides[][]; // The weight of the level of each facility in the mixed-radix index of a distribution [nProducts][nFacilities]
+    protected final int distributionIndex[][]; // The distribution corresponding to each mixed-radix index, 0 if none [nProducts][nLevelCombinations]
     protected final String distributionNames[][]; // The name of the distributuon (e.g., D1, D2, ...) [nProducts][maxNDistributions]
-    protected final int nScenarios[][]; // Number of scenarios for each product and distribution [nProducts][nDistribution]
     protected final int maxNScenarios; // The highest number of scenarios across all distributions
-    protected final double probabilities[][][]; // Probability of each scenario for each distribution [nProducts][nDistributions][maxNScenarios]
-    protected final double yieldRealization[][][][]; // The yield realization for a given product, distribution, facility and scenario [nProducts][maxNDistributions][nFacilities][maxNScenarios]
-    protected final double demandRealization[][][]; // The demand realization for a given product, distribution and scenario [nProducts][maxNDistributions][maxNScenarios]
-    protected double upperBoundOnProductionRealization[][][]; // The maximum production for a given product, distribution, scenario [nProducts][maxNDistributions][maxNScenarios]
-    protected double upperBoundOnProductExpectation[]; // An upper bound on the highest profit expectation for a given product [nProducts]
+    protected final ScenarioStore scenarios; // The yield and demand scenarios
+    protected final InstanceStatistics statistics; // The highest yields and demands and the upper bounds, computed once
 
     protected ProductionPlanningProblem(int nFacilities, int nProducts, double[] totalCapacities, double[] leftoverCosts, double[][] manufacturingCosts, double[] salesPrices,
                                                       int[][] nProductionLevels, double[][][] productionLevelLowerBounds, double[][][] productionLevelUpperBounds,
                                                       int[] nDistributions, int maxNDistributions, int[][][] distributionProductionLevels, String[][] distributionNames,
-                                                      double[][][] probabilities, int[][] nScenarios, int maxNScenarios, double[][][][] yieldRealization, double[][][] demandRealization){
+                                                      ScenarioStore scenarios){
+        this(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
+                nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
+                nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
+                scenarios, null);
+    }
+
+    /**
+     * Constructs the problem with statistics computed beforehand, e.g., read from a cache.
+     * If the statistics are null, they are computed.
+     */
+    protected ProductionPlanningProblem(int nFacilities, int nProducts, double[] totalCapacities, double[] leftoverCosts, double[][] manufacturingCosts, double[] salesPrices,
+                                                      int[][] nProductionLevels, double[][][] productionLevelLowerBounds, double[][][] productionLevelUpperBounds,
+                                                      int[] nDistributions, int maxNDistributions, int[][][] distributionProductionLevels, String[][] distributionNames,
+                                                      ScenarioStore scenarios, InstanceStatistics statistics){
         this.nFacilities = nFacilities;
         this.nProducts = nProducts;
         this.leftoverCosts = leftoverCosts;
@@ -57,11 +62,19 @@ abstract public class ProductionPlanningProblem {
         this.maxNDistributions = maxNDistributions;
         this.distributionProductionLevels = distributionProductionLevels;
         this.distributionNames = distributionNames;
-        this.probabilities = probabilities;
-        this.nScenarios = nScenarios;
+        this.distributionStrides = new int[nProducts][nFacilities];
+        this.distributionIndex = new int[nProducts][];
+        for(int p = 1; p <= nProducts; p++){
+            buildDistributionIndex(p);
+        }
+        this.scenarios = scenarios;
+        int maxNScenarios = 0;
+        for(int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= nDistributions[p-1]; d++){
+                maxNScenarios = Math.max(maxNScenarios, getnScenarios(p,d));
+            }
+        }
         this.maxNScenarios = maxNScenarios;
-        this.yieldRealization = yieldRealization;
-        this.demandRealization = demandRealization;
         int maxNLevels = 0;
         for(int f = 1; f <= nFacilities; f++){
             for(int p = 1; p <= nProducts; p++){
@@ -74,19 +87,7 @@ abstract public class ProductionPlanningProblem {
         this.productionLevelLowerBounds = productionLevelLowerBounds;
         this.productionLevelUpperBounds = productionLevelUpperBounds;
         this.totalCapacities = totalCapacities;
-        this.upperBoundOnProductionRealization = new double[nProducts][maxNDistributions][maxNScenarios];
-        for(int p = 1; p <= nProducts; p++){
-            for(int d = 1; d <= getnDistributions(p); d++){
-                for(int s = 1; s <= getnScenarios(p,d); s++){
-                    this.upperBoundOnProductionRealization[p-1][d-1][s-1] = computeUpperBoundOnProductionRealization(p,d,s);
-                }
-            }
-        }
-        this.upperBoundOnProductExpectation = new double[nProducts];
-        for(int p = 1; p <= nProducts; p++){
-            this.upperBoundOnProductExpectation[p - 1] = computeUpperBoundProductExpectation(p);
-        }
-
+        this.statistics = statistics != null ? statistics : new InstanceStatistics(this);
     }
 
 
@@ -119,7 +120,7 @@ abstract public class ProductionPlanningProblem {
     }
 
     public int getnScenarios(int product, int distribution) {
-        return nScenarios[product-1][distribution-1];
+        return getnYieldScenarios(product,distribution) * getnDemandScenarios(product);
     }
 
     public double getManufacturingCosts(int facility,int product) {
@@ -131,7 +132,8 @@ abstract public class ProductionPlanningProblem {
     }
 
     public double getProbability(int product,int distribution,int scenario) {
-        return probabilities[product-1][distribution-1][scenario-1];
+        return getYieldScenarioProbability(product,distribution,getYieldScenario(product,scenario))
+                * getDemandScenarioProbability(product,getDemandScenario(product,scenario));
     }
 
     public double getLeftoverCosts(int product) {
@@ -150,12 +152,205 @@ abstract public class ProductionPlanningProblem {
         return distributionProductionLevels[product-1][distribution-1][facility-1];
     }
 
+    public String getDistributionName(int product, int distribution) {
+        return distributionNames[product-1][distribution-1];
+    }
+
+    /**
+     * Returns the statistics of the instance, which can be cached and passed to the constructor.
+     * @return
+     */
+    public InstanceStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Builds the index mapping the levels enforced at the facilities to the distribution of the product.
+     * The distributions are the cartesian product of the production levels of the facilities, so the levels
+     * (l_1,...,l_F) are mapped to the mixed-radix number sum_f l_f * stride_f, where the level of the last facility
+     * varies fastest. The files list the distributions in this order, in which case distribution d has index d-1.
+     * Otherwise, the index still maps each combination of levels to its distribution.
+     * @param product
+     */
+    private void buildDistributionIndex(int product){
+        int nCombinations = 1;
+        for(int f = nFacilities; f >= 1; f--){
+            distributionStrides[product-1][f-1] = nCombinations;
+            nCombinations = nCombinations * nProductionLevels[f-1][product-1];
+        }
+        distributionIndex[product-1] = new int[nCombinations];
+        boolean ordered = nDistributions[product-1] == nCombinations;
+        for(int d = 1; d <= nDistributions[product-1]; d++){
+            int index = 0;
+            for(int f = 1; f <= nFacilities; f++){
+                int level = distributionProductionLevels[product-1][d-1][f-1];
+                if(level < 0 || level >= nProductionLevels[f-1][product-1]){
+                    throw new IllegalArgumentException("Invalid level "+level+" at facility "+f+" in distribution "+d+" of product "+product);
+                }
+                index = index + level * distributionStrides[product-1][f-1];
+            }
+            if(distributionIndex[product-1][index] != 0){
+                throw new IllegalArgumentException("Distributions "+distributionIndex[product-1][index]+" and "+d+" of product "+product+" enforce the same levels");
+            }
+            distributionIndex[product-1][index] = d;
+            ordered = ordered && (index == d-1);
+        }
+        if(!ordered){
+            System.out.println("The distributions of product "+product+" are not listed in mixed-radix order");
+        }
+    }
+
+    /**
+     * Returns the distribution enforced on the product by the given y values, i.e., the distribution
+     * whose levels have y above the threshold at every facility.
+     * The distribution is found in O(nFacilities * nLevels) through the mixed-radix index.
+     * @param product
+     * @param Y the values of the y variables of the product [nFacilities][maxNProductionLevels]
+     * @param threshold the value above which a y variable is considered equal to one
+     * @return the distribution, or 0 if no distribution is enforced
+     */
+    public int getEnforcedDistribution(int product, double Y[][], double threshold){
+        int index = 0;
+        for(int f = 1; f <= nFacilities; f++){
+            int level = 0;
+            while(level < nProductionLevels[f-1][product-1] && Y[f-1][level] < threshold){
+                level++;
+            }
+            if(level == nProductionLevels[f-1][product-1]){
+                return 0;
+            }
+            index = index + level * distributionStrides[product-1][f-1];
+        }
+        return distributionIndex[product-1][index];
+    }
+
+    /**
+     * Returns the distribution enforced on the product by the given integer y values.
+     * @param product
+     * @param Y the values of the y variables of the product [nFacilities][maxNProductionLevels]
+     * @return the distribution, or 0 if no distribution is enforced
+     */
+    public int getEnforcedDistribution(int product, int Y[][]){
+        int index = 0;
+        for(int f = 1; f <= nFacilities; f++){
+            int level = 0;
+            while(level < nProductionLevels[f-1][product-1] && Y[f-1][level] < 0.5){
+                level++;
+            }
+            if(level == nProductionLevels[f-1][product-1]){
+                return 0;
+            }
+            index = index + level * distributionStrides[product-1][f-1];
+        }
+        return distributionIndex[product-1][index];
+    }
+
+    /**
+     * Returns the distribution of the product with the largest support, i.e., the largest sum of the y values of its levels.
+     * When all combinations of levels are distributions, it is found in O(nFacilities * nLevels) by picking
+     * the level with the largest y at each facility. Otherwise, all distributions are scanned.
+     * @param product
+     * @param Y the values of the y variables of the product [nFacilities][maxNProductionLevels]
+     * @return the distribution
+     */
+    public int getLargestSupportDistribution(int product, double Y[][]){
+        int index = 0;
+        for(int f = 1; f <= nFacilities; f++){
+            int bestLevel = 0;
+            for(int level = 1; level < nProductionLevels[f-1][product-1]; level++){
+                if(Y[f-1][level] > Y[f-1][bestLevel]){
+                    bestLevel = level;
+                }
+            }
+            index = index + bestLevel * distributionStrides[product-1][f-1];
+        }
+        if(distributionIndex[product-1][index] > 0){
+            return distributionIndex[product-1][index];
+        }
+        int bestDistribution = 1;
+        double bestSupport = Double.NEGATIVE_INFINITY;
+        for(int d = 1; d <= getnDistributions(product); d++){
+            double support = 0;
+            for(int f = 1; f <= nFacilities; f++){
+                support = support + Y[f-1][getDistributionProductionLevels(product,d,f)];
+            }
+            if(support > bestSupport){
+                bestSupport = support;
+                bestDistribution = d;
+            }
+        }
+        return bestDistribution;
+    }
+
     public double getYieldRealization(int product, int distribution, int facility, int scenario) {
-        return yieldRealization[product-1][distribution-1][facility-1][scenario-1];
+        return getYieldScenarioRealization(product,distribution,facility,getYieldScenario(product,scenario));
     }
 
     public double getDemandRealization(int product, int distribution, int scenario) {
-        return demandRealization[product-1][distribution-1][scenario-1];
+        return getDemandScenarioRealization(product,getDemandScenario(product,scenario));
+    }
+
+    /**
+     * ==========================================
+     * Yield and demand scenarios.
+     * The scenarios of a distribution are the cartesian product of its yield scenarios
+     * and of the demand scenarios, the latter being shared by all distributions of a product.
+     * Scenario s corresponds to yield scenario sy and demand scenario sd with s = (sy-1) * nDemandScenarios + sd.
+     * Only the two factors are stored: the scenario accessors above are computed from them,
+     * and the loops over scenarios can iterate over the factors directly.
+     * ==========================================
+     */
+
+    /**
+     * Returns the yield scenario of the given scenario.
+     * @param product
+     * @param scenario
+     * @return
+     */
+    public int getYieldScenario(int product, int scenario) {
+        return (scenario-1) / getnDemandScenarios(product) + 1;
+    }
+
+    /**
+     * Returns the demand scenario of the given scenario.
+     * @param product
+     * @param scenario
+     * @return
+     */
+    public int getDemandScenario(int product, int scenario) {
+        return (scenario-1) % getnDemandScenarios(product) + 1;
+    }
+
+    public int getnYieldScenarios(int product, int distribution) {
+        return scenarios.getnYieldScenarios(product-1,distribution-1);
+    }
+
+    public double getYieldScenarioProbability(int product, int distribution, int yieldScenario) {
+        return scenarios.getYieldScenarioProbability(product-1,distribution-1,yieldScenario-1);
+    }
+
+    public double getYieldScenarioRealization(int product, int distribution, int facility, int yieldScenario) {
+        return scenarios.getYield(product-1,distribution-1,yieldScenario-1,facility-1);
+    }
+
+    public int getnDemandScenarios(int product) {
+        return scenarios.getnDemandScenarios(product-1);
+    }
+
+    public double getDemandScenarioProbability(int product, int demandScenario) {
+        return scenarios.getDemandScenarioProbability(product-1,demandScenario-1);
+    }
+
+    public double getDemandScenarioRealization(int product, int demandScenario) {
+        return scenarios.getDemand(product-1,demandScenario-1);
+    }
+
+    /**
+     * Returns the store of the scenarios, whose zero-based accessors are meant for the hot loops.
+     * @return
+     */
+    public ScenarioStore getScenarioStore() {
+        return scenarios;
     }
     /**
      * Returns the lower bound for a given production level at a given facility for a given product.
@@ -181,100 +376,47 @@ abstract public class ProductionPlanningProblem {
         return totalCapacities[facility-1];
     }
 
+    /**
+     * Returns the highest yield of the product at the facility over all distributions and yield scenarios.
+     * @param product
+     * @param facility
+     * @return
+     */
     public double getHighestYield(int product, int facility){
-        double highestYield = Double.NEGATIVE_INFINITY;
-        for(int d = 1; d <= getnDistributions(product); d++){
-            for(int s = 1; s <= getnScenarios(product,d); s++){
-                if(getYieldRealization(product,d,facility,s) > highestYield){
-                    highestYield = getYieldRealization(product,d,facility,s);
-                }
-            }
-        }
-        return highestYield;
+        return statistics.highestYieldOfProduct[product-1][facility-1];
     }
+    /**
+     * Returns the highest yield of the product at the facility over the distributions enforcing the given level at the facility.
+     * @param product
+     * @param facility
+     * @param level
+     * @return
+     */
     public double getHighestYieldForLevel(int product, int facility, int level){
-        double highestYield = Double.NEGATIVE_INFINITY;
-        for(int d = 1; d <= getnDistributions(product); d++){
-            if(getDistributionProductionLevels(product,d,facility) == (level-1)) {
-                for (int s = 1; s <= getnScenarios(product, d); s++) {
-                    if (getYieldRealization(product, d, facility, s) > highestYield) {
-                        highestYield = getYieldRealization(product, d, facility, s);
-                    }
-                }
-            }
-        }
-        System.out.println(product+"-"+facility+"-"+level+" "+highestYield);
-        return highestYield;
+        return statistics.highestYieldForLevel[product-1][facility-1][level-1];
     }
     public double getHighestYield(int product, int facility,int distribution){
-        double highestYield = Double.NEGATIVE_INFINITY;
-        for(int s = 1; s <= getnScenarios(product,distribution); s++){
-            if(getYieldRealization(product,distribution,facility,s) > highestYield){
-                highestYield = getYieldRealization(product,distribution,facility,s);
-            }
-        }
-        return highestYield;
+        return statistics.highestYield[product-1][distribution-1][facility-1];
     }
 
     public double getHighestYield(int facility){
-        double highestYield = Double.NEGATIVE_INFINITY;
-        for(int p = 1; p <= getnProducts(); p++) {
-            for(int d = 1; d <= getnDistributions(p); d++) {
-                for (int s = 1; s <= getnScenarios(p, d); s++) {
-                    if (getYieldRealization(p, d, facility, s) > highestYield) {
-                        highestYield = getYieldRealization(p, d, facility, s);
-                    }
-                }
-            }
-        }
-        return highestYield;
+        return statistics.highestYieldOfFacility[facility-1];
     }
 
     public double getHighestSellingPrice(){
-        double highestSellingPrice = Double.NEGATIVE_INFINITY;
-        for(int p = 1; p <= getnProducts(); p++) {
-            if(getSalesPrice(p) > highestSellingPrice){
-                highestSellingPrice = getSalesPrice(p);
-            }
-        }
-        return highestSellingPrice;
+        return statistics.highestSellingPrice;
     }
     public double getExpectedYield(int product, int facility,int distribution){
-        double expectedYield = 0;
-        for(int s = 1; s <= getnScenarios(product,distribution); s++){
-            expectedYield = expectedYield + getProbability(product,distribution,s) * getYieldRealization(product,distribution,facility,s);
-        }
-        return expectedYield;
+        return statistics.expectedYield[product-1][distribution-1][facility-1];
     }
     public double getHighestExpectedYield(int product,int facility){
-        double highestExpectedYield = Double.NEGATIVE_INFINITY;
-        for(int d = 1; d <= getnDistributions(product); d++){
-            if(getExpectedYield(product,facility,d) > highestExpectedYield){
-                highestExpectedYield = getExpectedYield(product,facility,d);
-            }
-        }
-        return highestExpectedYield;
+        return statistics.highestExpectedYield[product-1][facility-1];
     }
     public double getHighestDemand(int product){
-        double highestDemand = Double.NEGATIVE_INFINITY;
-        for(int d = 1; d <= getnDistributions(product); d++){
-            for(int s = 1; s <= getnScenarios(product,d); s++){
-                if(getDemandRealization(product,d,s) > highestDemand){
-                    highestDemand = getDemandRealization(product,d,s);
-                }
-            }
-        }
-        return highestDemand;
+        return statistics.highestDemandOfProduct[product-1];
     }
     public double getHighestDemand(int product, int distribution){
-        double highestDemand = Double.NEGATIVE_INFINITY;
-
-        for(int s = 1; s <= getnScenarios(product,distribution); s++){
-            if(getDemandRealization(product,distribution,s) > highestDemand){
-                highestDemand = getDemandRealization(product,distribution,s);
-            }
-        }
-        return highestDemand;
+        return statistics.highestDemand[product-1][distribution-1];
     }
 
     /**
@@ -284,22 +426,33 @@ abstract public class ProductionPlanningProblem {
      **/
 
     /**
-     * Computes an upper bound on the total production realized for a given product, distribution and scenario.
+     * Computes an upper bound on the total production realized for a given product, distribution and yield scenario.
      * @param product
      * @param distribution
-     * @param scenario
+     * @param yieldScenario
      * @return
      */
-     abstract double computeUpperBoundOnProductionRealization(int product, int distribution, int scenario);
+     abstract double computeUpperBoundOnProductionRealization(int product, int distribution, int yieldScenario);
     /**
      * Returns an upper bound on the total production realized for a given product, distribution and scenario.
+     * The bound only depends on the yield scenario.
      * @param product
      * @param distribution
      * @param scenario
      * @return
      */
     public double getUpperBoundOnProductionRealization(int product, int distribution, int scenario){
-        return upperBoundOnProductionRealization[product-1][distribution-1][scenario-1];
+        return getUpperBoundOnYieldScenarioProduction(product,distribution,getYieldScenario(product,scenario));
+    }
+    /**
+     * Returns an upper bound on the total production realized for a given product, distribution and yield scenario.
+     * @param product
+     * @param distribution
+     * @param yieldScenario
+     * @return
+     */
+    public double getUpperBoundOnYieldScenarioProduction(int product, int distribution, int yieldScenario){
+        return statistics.upperBoundOnProductionRealization[product-1][distribution-1][yieldScenario-1];
     }
     /**
      * Computes an upper bound on the total amount of sales.
@@ -327,71 +480,43 @@ abstract public class ProductionPlanningProblem {
      * Computes an upper bound on the phi_p variable for the single-cut master problem with disposal costs.
      * The bound is given by the highest expectation among the possible distributions for the given product.
      * @param product
+     * @param upperBoundOnProductionRealization the upper bound on the production of each yield scenario of the product [nDistributions][nYieldScenarios]
      * @return
      */
-    abstract double computeUpperBoundProductExpectation(int product);
+    abstract double computeUpperBoundProductExpectation(int product, double upperBoundOnProductionRealization[][]);
     public double getUpperBoundProductExpectation(int product){
-        return upperBoundOnProductExpectation[product-1];
+        return statistics.upperBoundOnProductExpectation[product-1];
     }
+    /**
+     * Returns the minimal cover of the capacity of the facility with the fewest production levels.
+     * @param facility
+     * @return the cover, or null if the lower bounds of the levels cannot exceed the capacity
+     */
     public Cover getMinimumCover(int facility){
-        Cover c = null;
-        // Creates a graph
-        DirectedWeightedMultigraph<Integer, ExtendedEdge> g = new DirectedWeightedMultigraph<>(ExtendedEdge.class);
-        // Add a dummy final node p+1
-        for(int p = 1; p <= nProducts+1; p++){
-            g.addVertex(p);
-        }
-        // Add arcs also from the last p to the dummy node
-        int nEdges = 0;
-        for(int p = 1; p <= nProducts; p++){
-            for(int l = 1; l <= getnProductionLevels(facility,p); l++) {
-                ExtendedEdge e = new ExtendedEdge();
-                e.setLevel(l);
-                e.setProduct(p);
-                g.addEdge(p, p+1,e);
-                g.setEdgeWeight(e, getProductionLevelLowerBound(facility,p,l));
-                nEdges++;
-            }
-        }
+        List<Cover> covers = new CoverEnumerator(this, facility, 1).enumerate();
+        return covers.isEmpty() ? null : covers.get(0);
+    }
 
-        boolean found = false;
-        while(!found && (nEdges>=nProducts)) {
-            DijkstraShortestPath<Integer, ExtendedEdge> dijkstra = new DijkstraShortestPath<>(g);
-            GraphPath<Integer, ExtendedEdge> path = dijkstra.getPath(1, nProducts + 1);
-            double pathWeight = dijkstra.getPathWeight(1, nProducts + 1);
-            System.out.println("Path weight " + pathWeight);
-            if (pathWeight < getTotalCapacity(facility)) {
-                ExtendedEdge shortestEdge = null;
-                double smallestWeight = Double.POSITIVE_INFINITY;
-                for (ExtendedEdge e : path.getEdgeList()) {
-                    //System.out.println("Edge from " + e.getProduct() + " weight " + getProductionLevelLowerBound(facility, e.getProduct(), e.getLevel()));
-                    double weight = getProductionLevelLowerBound(facility, e.getProduct(), e.getLevel());
-                    if (weight < smallestWeight) {
-                        smallestWeight = weight;
-                        shortestEdge = e;
-                    }
-                }
-                //System.out.println("Removing shortest edge from " + shortestEdge.getProduct() +" level "+ shortestEdge.getLevel() + " weight " + getProductionLevelLowerBound(facility, shortestEdge.getProduct(), shortestEdge.getLevel()));
-                g.removeEdge(shortestEdge);
-                nEdges--;
-            }else{
-                System.out.println("Total capacity "+getTotalCapacity(facility));
-                found = true;
-                if(pathWeight < Double.POSITIVE_INFINITY) {
-                    HashMap<Integer, Integer> levels = new HashMap<>();
-                    for (ExtendedEdge e : path.getEdgeList()) {
-                        int product = e.getProduct();
-                        int level = e.getLevel();
-                        if (getProductionLevelLowerBound(facility, product, e.getLevel()) > 0) {
-                            levels.put(product, level);
-                        }
-                    }
-                    c = new Cover(levels, pathWeight);
-                }
-            }
-        }
+    /**
+     * Enumerates distinct minimal covers of the capacity of the facility, i.e., sets of production levels of distinct products
+     * whose lower bounds exceed the capacity of the facility, and that no longer exceed it when any level is removed.
+     * @param facility
+     * @param maxCovers the largest number of covers returned
+     * @return the covers, the one with the fewest levels first
+     */
+    public List<Cover> getMinimalCovers(int facility, int maxCovers){
+        return new CoverEnumerator(this, facility, maxCovers).enumerate();
+    }
 
-        return c;
+    /**
+     * Enumerates distinct minimal covers of the capacity of each facility. The facilities are processed in parallel.
+     * @param maxCovers the largest number of covers of each facility
+     * @return the covers of each facility [nFacilities][nCovers]
+     */
+    public Cover[][] getMinimalCovers(int maxCovers){
+        Cover covers[][] = new Cover[nFacilities][];
+        IntStream.rangeClosed(1, nFacilities).parallel().forEach(f -> covers[f-1] = getMinimalCovers(f, maxCovers).toArray(new Cover[0]));
+        return covers;
     }
     /**
      * ==========================================
@@ -429,7 +554,7 @@ abstract public class ProductionPlanningProblem {
         for(int p = 1; p <= nProducts; p++){
             System.out.println("Product "+p);
             for(int d = 1; d <= nDistributions[p-1]; d++){
-                System.out.println("Distribution "+d+" name "+ distributionNames[p-1][d-1]+" nScenarios "+nScenarios[p-1][d-1]);
+                System.out.println("Distribution "+d+" name "+ distributionNames[p-1][d-1]+" nScenarios "+getnScenarios(p,d));
                 System.out.println("Production level requirements ");
                 for(int f= 1; f <= nFacilities; f++){
                     System.out.print(" F"+f+" "+distributionProductionLevels[p-1][d-1][f-1]);
@@ -442,35 +567,15 @@ abstract public class ProductionPlanningProblem {
             System.out.println("Product "+p);
             for(int d = 1; d <= nDistributions[p-1]; d++){
                 System.out.println("Distribution "+d+" name "+distributionNames[p-1][d-1]);
-                for(int s = 1; s <= nScenarios[p-1][d-1]; s++) {
-                    System.out.println("Scenario "+s+ " probability "+probabilities[p-1][d-1][s-1]+" demand realization "+demandRealization[p-1][d-1][s-1]);
+                for(int s = 1; s <= getnScenarios(p,d); s++) {
+                    System.out.println("Scenario "+s+ " probability "+getProbability(p,d,s)+" demand realization "+getDemandRealization(p,d,s));
                     System.out.println("Yield realizations");
                     for (int f = 1; f <= nFacilities; f++) {
-                        System.out.print("F" + f + " " + yieldRealization[p - 1][d - 1][f - 1][s-1]+ " ");
+                        System.out.print("F" + f + " " + getYieldRealization(p,d,f,s)+ " ");
                     }
                     System.out.println();
                 }
             }
         }
     }
-    private class ExtendedEdge extends DefaultWeightedEdge{
-        private int product;
-        private int level;
-
-        public void setLevel(int level) {
-            this.level = level;
-        }
-
-        public void setProduct(int product) {
-            this.product = product;
-        }
-
-        public int getProduct() {
-            return product;
-        }
-
-        public int getLevel() {
-            return level;
-        }
-    }
 }
@@ -14,25 +14,40 @@ public class ProductionPlanningProblemWithSalvageRevenue extends ProductionPlann
     public ProductionPlanningProblemWithSalvageRevenue(int nFacilities, int nProducts, double[] totalCapacities, double[] leftoverCosts, double[][] manufacturingCosts, double[] salesPrices,
                                                        int[][] nProductionLevels, double[][][] productionLevelLowerBounds, double[][][] productionLevelUpperBounds,
                                                        int[] nDistributions, int maxNDistributions, int[][][] distributionProductionLevels, String[][] distributionNames,
-                                                       double[][][] probabilities, int[][] nScenarios, int maxNScenarios, double[][][][] yieldRealization, double[][][] demandRealization){
+                                                       ScenarioStore scenarios){
+
+        this(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
+                nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
+                nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
+                scenarios, null);
+    }
+
+    /**
+     * Constructs the problem with statistics computed beforehand, e.g., read from a cache.
+     * If the statistics are null, they are computed.
+     */
+    public ProductionPlanningProblemWithSalvageRevenue(int nFacilities, int nProducts, double[] totalCapacities, double[] leftoverCosts, double[][] manufacturingCosts, double[] salesPrices,
+                                                       int[][] nProductionLevels, double[][][] productionLevelLowerBounds, double[][][] productionLevelUpperBounds,
+                                                       int[] nDistributions, int maxNDistributions, int[][][] distributionProductionLevels, String[][] distributionNames,
+                                                       ScenarioStore scenarios, InstanceStatistics statistics){
 
         super(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
                 nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
                 nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
-                probabilities, nScenarios, maxNScenarios, yieldRealization, demandRealization);
+                scenarios, statistics);
+    }
 
-        this.upperBoundOnProductionRealization = new double[nProducts][maxNDistributions][maxNScenarios];
-        for(int p = 1; p <= nProducts; p++){
-            for(int d = 1; d <= getnDistributions(p); d++){
-                for(int s = 1; s <= getnScenarios(p,d); s++){
-                    this.upperBoundOnProductionRealization[p-1][d-1][s-1] = computeUpperBoundOnProductionRealization(p,d,s);
-                }
-            }
-        }
-        this.upperBoundOnProductExpectation = new double[nProducts];
-        for(int p = 1; p <= nProducts; p++){
-            this.upperBoundOnProductExpectation[p-1] = computeUpperBoundProductExpectation(p);
-        }
+    /**
+     * Returns a copy of the problem with other scenarios, e.g., after they have been reduced.
+     * The data other than the scenarios are shared, and the statistics are recomputed.
+     * @param scenarios the scenarios, which must have the same products and distributions
+     * @return
+     */
+    public ProductionPlanningProblemWithSalvageRevenue withScenarioStore(ScenarioStore scenarios){
+        return new ProductionPlanningProblemWithSalvageRevenue(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
+                nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
+                nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
+                scenarios);
     }
 
 
@@ -44,19 +59,19 @@ public class ProductionPlanningProblemWithSalvageRevenue extends ProductionPlann
     **/
 
     /**
-     * Computes an upper bound on the total production realized for a given product, distribution and scenario.
+     * Computes an upper bound on the total production realized for a given product, distribution and yield scenario.
      * @param product
      * @param distribution
-     * @param scenario
+     * @param yieldScenario
      * @return
      */
-     double computeUpperBoundOnProductionRealization(int product, int distribution, int scenario){
+     double computeUpperBoundOnProductionRealization(int product, int distribution, int yieldScenario){
         double totalProduction = 0;
         for(int f = 1; f <= getnFacilities(); f++){
             // Calculates the largest production level upper bound
             int level = getDistributionProductionLevels(product,distribution,f) + 1;
             double highestProductionLevel = getProductionLevelUpperBound(f,product,level);
-            totalProduction = totalProduction + getYieldRealization(product,distribution,f,scenario) * Math.min(highestProductionLevel,getTotalCapacity(f));
+            totalProduction = totalProduction + getYieldScenarioRealization(product,distribution,f,yieldScenario) * Math.min(highestProductionLevel,getTotalCapacity(f));
         }
         return totalProduction;
     }
@@ -65,22 +80,26 @@ public class ProductionPlanningProblemWithSalvageRevenue extends ProductionPlann
      * Computes an upper bound on the phi_p variable for the single-cut master problem.
      * The bound is given by the highest expectation among the possible distributions for the given product.
      * @param product
+     * @param upperBoundOnProductionRealization the upper bound on the production of each yield scenario of the product [nDistributions][nYieldScenarios]
      * @return
      */
-     double computeUpperBoundProductExpectation(int product){
+     double computeUpperBoundProductExpectation(int product, double upperBoundOnProductionRealization[][]){
         double upperBound = Double.NEGATIVE_INFINITY;
         // We start by calculating, for each distribution and scenario,
         // the production of p is upper bounded as follows
         for(int d = 1; d <= getnDistributions(product); d++){
             double distributionExpectation = 0;
-            for(int s = 1; s <= getnScenarios(product,d); s++) {
+            for(int sy = 1; sy <= getnYieldScenarios(product,d); sy++) {
 
-                double maxProduction = getUpperBoundOnProductionRealization(product,d,s);
+                double maxProduction = upperBoundOnProductionRealization[d-1][sy-1];
 
-                double scenarioProfit = getSalesPrice(product) * Math.min(maxProduction,getDemandRealization(product,d,s))
-                        + getLeftoverCosts(product) * Math.max(0, maxProduction - getDemandRealization(product,d,s));
+                for(int sd = 1; sd <= getnDemandScenarios(product); sd++) {
+                    double demand = getDemandScenarioRealization(product,sd);
+                    double scenarioProfit = getSalesPrice(product) * Math.min(maxProduction,demand)
+                            + getLeftoverCosts(product) * Math.max(0, maxProduction - demand);
 
-                distributionExpectation = distributionExpectation + getProbability(product,d,s) * scenarioProfit;
+                    distributionExpectation = distributionExpectation + getYieldScenarioProbability(product,d,sy) * getDemandScenarioProbability(product,sd) * scenarioProfit;
+                }
             }
             if(distributionExpectation > upperBound){
                 upperBound = distributionExpectation;
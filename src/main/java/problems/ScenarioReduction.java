@@ -0,0 +1,479 @@
+package problems;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Reduces the number of scenarios of an instance of the production planning problem.
+ * Since the yield and the demand factors are independent, each factor is reduced separately:
+ * the yield scenarios of each product and distribution, and the demand scenarios of each product.
+ * The number of scenarios of a distribution, i.e., the product of the numbers of yield and demand scenarios,
+ * is then reduced by the product of the reductions.
+ *
+ * Besides the lossless deduplication, the scenarios can be reduced by the fast forward selection of
+ * Heitsch and Roemisch (2003): the scenarios are selected one at a time, each time the one that minimizes the
+ * Kantorovich distance between the original distribution and the selected scenarios, and the probability of
+ * each scenario that is not selected is given to the closest selected scenario.
+ * The distance between two yield vectors is the L1 distance weighted by the largest quantities allowed by the distribution
+ * and by the largest change of the profit per unit produced, and the distance between two demands is their difference
+ * weighted by the largest change of the profit per unit demanded. The profit of a product is then Lipschitz with constant 1,
+ * and the sum of the distances of both factors bounds the change of its expected profit under the distribution,
+ * whatever the quantities produced.
+ */
+public class ScenarioReduction {
+    private static final int MATRIX_SIZE = 1 << 22; // The largest number of distances that are computed in advance
+    private final int maxScenarios; // The largest number of scenarios selected in each factor
+    private final double tolerance; // The selection stops once the distance is below this fraction of the distance of a single scenario
+    private int nReducedYieldScenarios[][]; // The number of yield scenarios after the reduction [nProducts][nDistributions]
+    private int nReducedDemandScenarios[]; // The number of demand scenarios after the reduction [nProducts]
+    private double yieldDistances[][]; // The distance between the original and the reduced yield scenarios [nProducts][nDistributions]
+    private double demandDistances[]; // The distance between the original and the reduced demand scenarios [nProducts]
+    private double distances[][]; // A bound on the change of the expected profit [nProducts][nDistributions]
+
+    /**
+     * Creates a reduction by forward selection.
+     * @param maxScenarios the largest number of yield scenarios kept for each product and distribution, and of demand scenarios kept for each product
+     * @param tolerance the relative distance at which the selection stops, with respect to the distance of the best single scenario (0 to only limit the number of scenarios)
+     */
+    public ScenarioReduction(int maxScenarios, double tolerance) {
+        if(maxScenarios < 1){
+            throw new IllegalArgumentException("At least one scenario must be kept");
+        }
+        if(tolerance < 0 || tolerance >= 1){
+            throw new IllegalArgumentException("The relative tolerance must be in [0,1)");
+        }
+        this.maxScenarios = maxScenarios;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Merges the identical yield scenarios of each product and distribution, and the identical demands of each product,
+     * summing their probabilities. The reduced problem has the same optimal solutions and objective value.
+     * The scenarios are kept in the order of their first occurrence, in a store of the same kind as the original one.
+     * @param pp an instance of the production planning problem
+     * @return the problem with the merged scenarios, or the problem itself if no scenarios are identical
+     * @throws IOException if the store is off-heap and cannot be mapped
+     */
+    public static ProductionPlanningProblemWithSalvageRevenue deduplicate(ProductionPlanningProblemWithSalvageRevenue pp) throws IOException {
+        long start = System.currentTimeMillis();
+        ScenarioStore scenarios = pp.getScenarioStore();
+        int nProducts = pp.getnProducts();
+        int nFacilities = pp.getnFacilities();
+
+        // The first occurrence of each distinct yield vector and demand, with the total probability of its occurrences
+        int uniqueYieldScenarios[][][] = new int[nProducts][][]; // [nProducts][nDistributions][nUniqueYieldScenarios]
+        double uniqueYieldProbabilities[][][] = new double[nProducts][][];
+        double uniqueDemandProbabilities[][] = new double[nProducts][];
+        double uniqueDemands[][] = new double[nProducts][];
+        IntStream.range(0, nProducts).parallel().forEach(p -> {
+            int nDistributions = scenarios.getnDistributions(p);
+            uniqueYieldScenarios[p] = new int[nDistributions][];
+            uniqueYieldProbabilities[p] = new double[nDistributions][];
+            for(int d = 0; d < nDistributions; d++){
+                int nYieldScenarios = scenarios.getnYieldScenarios(p,d);
+                HashMap<YieldVector, Integer> positions = new HashMap<>();
+                int unique[] = new int[nYieldScenarios];
+                double probabilities[] = new double[nYieldScenarios];
+                int nUnique = 0;
+                for(int sy = 0; sy < nYieldScenarios; sy++){
+                    double yields[] = new double[nFacilities];
+                    for(int f = 0; f < nFacilities; f++){
+                        yields[f] = scenarios.getYield(p,d,sy,f);
+                    }
+                    Integer position = positions.putIfAbsent(new YieldVector(yields), nUnique);
+                    if(position == null){
+                        unique[nUnique] = sy;
+                        position = nUnique++;
+                    }
+                    probabilities[position] = probabilities[position] + scenarios.getYieldScenarioProbability(p,d,sy);
+                }
+                uniqueYieldScenarios[p][d] = Arrays.copyOf(unique, nUnique);
+                uniqueYieldProbabilities[p][d] = Arrays.copyOf(probabilities, nUnique);
+            }
+
+            int nDemandScenarios = scenarios.getnDemandScenarios(p);
+            HashMap<Double, Integer> positions = new HashMap<>();
+            double demands[] = new double[nDemandScenarios];
+            double probabilities[] = new double[nDemandScenarios];
+            int nUnique = 0;
+            for(int sd = 0; sd < nDemandScenarios; sd++){
+                double demand = scenarios.getDemand(p,sd);
+                Integer position = positions.putIfAbsent(demand, nUnique);
+                if(position == null){
+                    demands[nUnique] = demand;
+                    position = nUnique++;
+                }
+                probabilities[position] = probabilities[position] + scenarios.getDemandScenarioProbability(p,sd);
+            }
+            uniqueDemands[p] = Arrays.copyOf(demands, nUnique);
+            uniqueDemandProbabilities[p] = Arrays.copyOf(probabilities, nUnique);
+        });
+
+        boolean reduced = printReduction("Deduplication", scenarios, uniqueYieldScenarios, uniqueDemands, "", start);
+        if(!reduced){
+            return pp;
+        }
+        return copy(pp, uniqueYieldScenarios, uniqueYieldProbabilities, uniqueDemands, uniqueDemandProbabilities);
+    }
+
+    /**
+     * Reduces the yield scenarios of each product and distribution, and the demand scenarios of each product, by forward selection.
+     * The factors are reduced in parallel. The distances are then available through the getters.
+     * @param pp an instance of the production planning problem
+     * @return the problem with the selected scenarios, or the problem itself if all scenarios are selected
+     * @throws IOException if the store is off-heap and cannot be mapped
+     */
+    public ProductionPlanningProblemWithSalvageRevenue reduce(ProductionPlanningProblemWithSalvageRevenue pp) throws IOException {
+        long start = System.currentTimeMillis();
+        ScenarioStore scenarios = pp.getScenarioStore();
+        int nProducts = pp.getnProducts();
+        int nFacilities = pp.getnFacilities();
+
+        nReducedYieldScenarios = new int[nProducts][];
+        nReducedDemandScenarios = new int[nProducts];
+        yieldDistances = new double[nProducts][];
+        demandDistances = new double[nProducts];
+        int selectedYieldScenarios[][][] = new int[nProducts][][];
+        double selectedYieldProbabilities[][][] = new double[nProducts][][];
+        double selectedDemands[][] = new double[nProducts][];
+        double selectedDemandProbabilities[][] = new double[nProducts][];
+
+        // One task for the demands of each product, and one for the yields of each product and distribution
+        int nTasks = 0;
+        for(int p = 0; p < nProducts; p++){
+            nTasks = nTasks + 1 + scenarios.getnDistributions(p);
+            nReducedYieldScenarios[p] = new int[scenarios.getnDistributions(p)];
+            yieldDistances[p] = new double[scenarios.getnDistributions(p)];
+            selectedYieldScenarios[p] = new int[scenarios.getnDistributions(p)][];
+            selectedYieldProbabilities[p] = new double[scenarios.getnDistributions(p)][];
+        }
+        int taskProducts[] = new int[nTasks];
+        int taskDistributions[] = new int[nTasks]; // -1 for the demands
+        int t = 0;
+        for(int p = 0; p < nProducts; p++){
+            taskProducts[t] = p;
+            taskDistributions[t++] = -1;
+            for(int d = 0; d < scenarios.getnDistributions(p); d++){
+                taskProducts[t] = p;
+                taskDistributions[t++] = d;
+            }
+        }
+
+        IntStream.range(0, nTasks).parallel().forEach(task -> {
+            int p = taskProducts[task];
+            int d = taskDistributions[task];
+            double salesPrice = pp.getSalesPrice(p+1);
+            double leftoverCost = pp.getLeftoverCosts(p+1);
+            if(d < 0){
+                int n = scenarios.getnDemandScenarios(p);
+                double demands[] = new double[n];
+                double probabilities[] = new double[n];
+                for(int sd = 0; sd < n; sd++){
+                    demands[sd] = scenarios.getDemand(p,sd);
+                    probabilities[sd] = scenarios.getDemandScenarioProbability(p,sd);
+                }
+                double demandSlope = Math.abs(salesPrice - leftoverCost);
+                Selection selection = select(n, probabilities, (i, j) -> demandSlope * Math.abs(demands[i] - demands[j]));
+                nReducedDemandScenarios[p] = selection.scenarios.length;
+                demandDistances[p] = selection.distance;
+                selectedDemands[p] = new double[selection.scenarios.length];
+                for(int s = 0; s < selection.scenarios.length; s++){
+                    selectedDemands[p][s] = demands[selection.scenarios[s]];
+                }
+                selectedDemandProbabilities[p] = selection.probabilities;
+            } else {
+                int n = scenarios.getnYieldScenarios(p,d);
+                double productionSlope = Math.max(Math.abs(salesPrice), Math.abs(leftoverCost));
+                double weights[] = new double[nFacilities];
+                for(int f = 1; f <= nFacilities; f++){
+                    int level = pp.getDistributionProductionLevels(p+1,d+1,f) + 1;
+                    weights[f-1] = productionSlope * Math.min(pp.getProductionLevelUpperBound(f,p+1,level), pp.getTotalCapacity(f));
+                }
+                double yields[][] = new double[n][nFacilities];
+                double probabilities[] = new double[n];
+                for(int sy = 0; sy < n; sy++){
+                    for(int f = 0; f < nFacilities; f++){
+                        yields[sy][f] = weights[f] * scenarios.getYield(p,d,sy,f);
+                    }
+                    probabilities[sy] = scenarios.getYieldScenarioProbability(p,d,sy);
+                }
+                Selection selection = select(n, probabilities, (i, j) -> {
+                    double distance = 0;
+                    for(int f = 0; f < nFacilities; f++){
+                        distance = distance + Math.abs(yields[i][f] - yields[j][f]);
+                    }
+                    return distance;
+                });
+                nReducedYieldScenarios[p][d] = selection.scenarios.length;
+                yieldDistances[p][d] = selection.distance;
+                selectedYieldScenarios[p][d] = selection.scenarios;
+                selectedYieldProbabilities[p][d] = selection.probabilities;
+            }
+        });
+
+        // The distance of the product of the factors is at most the sum of the distances, each weighted by the mass of the other factor
+        distances = new double[nProducts][];
+        double distanceBound = 0;
+        for(int p = 0; p < nProducts; p++){
+            double totalDemandProbability = 0;
+            for(int sd = 0; sd < scenarios.getnDemandScenarios(p); sd++){
+                totalDemandProbability = totalDemandProbability + scenarios.getDemandScenarioProbability(p,sd);
+            }
+            distances[p] = new double[scenarios.getnDistributions(p)];
+            double productDistance = 0;
+            for(int d = 0; d < scenarios.getnDistributions(p); d++){
+                double totalYieldProbability = 0;
+                for(int sy = 0; sy < scenarios.getnYieldScenarios(p,d); sy++){
+                    totalYieldProbability = totalYieldProbability + scenarios.getYieldScenarioProbability(p,d,sy);
+                }
+                distances[p][d] = totalDemandProbability * yieldDistances[p][d] + totalYieldProbability * demandDistances[p];
+                productDistance = Math.max(productDistance, distances[p][d]);
+            }
+            distanceBound = distanceBound + productDistance;
+        }
+
+        boolean reduced = printReduction("Forward selection", scenarios, selectedYieldScenarios, selectedDemands,
+                ", objective change at most "+distanceBound, start);
+        if(!reduced){
+            return pp;
+        }
+        return copy(pp, selectedYieldScenarios, selectedYieldProbabilities, selectedDemands, selectedDemandProbabilities);
+    }
+
+    /**
+     * Selects scenarios by fast forward selection.
+     * The distances are computed in advance when there are few scenarios, and otherwise on demand.
+     * @param n the number of scenarios
+     * @param probabilities the probability of each scenario [n]
+     * @param distance the distance between two scenarios
+     * @return the selected scenarios, in their original order
+     */
+    private Selection select(int n, double probabilities[], Distance distance) {
+        if(n <= maxScenarios && tolerance == 0){
+            int all[] = new int[n];
+            for(int i = 0; i < n; i++){
+                all[i] = i;
+            }
+            return new Selection(all, probabilities.clone(), 0);
+        }
+        if((long) n * n <= MATRIX_SIZE){
+            double matrix[] = new double[n * n];
+            for(int i = 0; i < n; i++){
+                for(int j = i + 1; j < n; j++){
+                    matrix[i * n + j] = distance.between(i, j);
+                    matrix[j * n + i] = matrix[i * n + j];
+                }
+            }
+            distance = (i, j) -> matrix[i * n + j];
+        }
+
+        boolean selected[] = new boolean[n];
+        double closestDistance[] = new double[n]; // The distance to the closest selected scenario
+        int closest[] = new int[n];
+        Arrays.fill(closestDistance, Double.POSITIVE_INFINITY);
+        int nSelected = 0;
+        double currentDistance = Double.POSITIVE_INFINITY;
+        double firstDistance = 0;
+        while(nSelected < n && nSelected < maxScenarios && (nSelected == 0 || currentDistance > tolerance * firstDistance)){
+            // The scenario whose selection minimizes the distance
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for(int u = 0; u < n; u++){
+                if(selected[u]){
+                    continue;
+                }
+                double candidateDistance = 0;
+                for(int i = 0; i < n && candidateDistance < bestDistance; i++){
+                    if(!selected[i] && i != u){
+                        candidateDistance = candidateDistance + probabilities[i] * Math.min(closestDistance[i], distance.between(i, u));
+                    }
+                }
+                if(best < 0 || candidateDistance < bestDistance){
+                    best = u;
+                    bestDistance = candidateDistance;
+                }
+            }
+            selected[best] = true;
+            nSelected++;
+            for(int i = 0; i < n; i++){
+                if(!selected[i]){
+                    double d = distance.between(i, best);
+                    if(d < closestDistance[i]){
+                        closestDistance[i] = d;
+                        closest[i] = best;
+                    }
+                }
+            }
+            currentDistance = bestDistance;
+            if(nSelected == 1){
+                firstDistance = bestDistance;
+            }
+        }
+
+        // Each scenario that is not selected gives its probability to the closest selected scenario
+        double redistributed[] = new double[n];
+        for(int i = 0; i < n; i++){
+            redistributed[selected[i] ? i : closest[i]] += probabilities[i];
+        }
+        int scenarios[] = new int[nSelected];
+        double selectedProbabilities[] = new double[nSelected];
+        int s = 0;
+        for(int i = 0; i < n; i++){
+            if(selected[i]){
+                scenarios[s] = i;
+                selectedProbabilities[s++] = redistributed[i];
+            }
+        }
+        return new Selection(scenarios, selectedProbabilities, nSelected == 0 ? 0 : currentDistance);
+    }
+
+    /**
+     * Prints the numbers of scenarios before and after a reduction.
+     * @return whether the number of scenarios was reduced
+     */
+    private static boolean printReduction(String name, ScenarioStore scenarios, int yieldScenarios[][][], double demands[][], String details, long start) {
+        long nScenarios = 0;
+        long nReducedScenarios = 0;
+        long nYieldScenarios = 0;
+        long nReducedYieldScenarios = 0;
+        long nDemandScenarios = 0;
+        long nReducedDemandScenarios = 0;
+        for(int p = 0; p < scenarios.getnProducts(); p++){
+            nDemandScenarios = nDemandScenarios + scenarios.getnDemandScenarios(p);
+            nReducedDemandScenarios = nReducedDemandScenarios + demands[p].length;
+            for(int d = 0; d < scenarios.getnDistributions(p); d++){
+                nYieldScenarios = nYieldScenarios + scenarios.getnYieldScenarios(p,d);
+                nReducedYieldScenarios = nReducedYieldScenarios + yieldScenarios[p][d].length;
+                nScenarios = nScenarios + (long) scenarios.getnYieldScenarios(p,d) * scenarios.getnDemandScenarios(p);
+                nReducedScenarios = nReducedScenarios + (long) yieldScenarios[p][d].length * demands[p].length;
+            }
+        }
+        System.out.println(name+": yield scenarios "+nYieldScenarios+" -> "+nReducedYieldScenarios
+                +", demand scenarios "+nDemandScenarios+" -> "+nReducedDemandScenarios
+                +", scenarios "+nScenarios+" -> "+nReducedScenarios
+                +" (ratio "+(nScenarios == 0 ? 1 : (double) nReducedScenarios / nScenarios)+")"+details
+                +" in "+(System.currentTimeMillis() - start)/1000.0+" seconds.");
+        return nReducedYieldScenarios < nYieldScenarios || nReducedDemandScenarios < nDemandScenarios;
+    }
+
+    /**
+     * Copies the given scenarios into a store of the same kind as the one of the problem.
+     * @param pp
+     * @param yieldScenarios the yield scenarios kept of each product and distribution [nProducts][nDistributions][nReducedYieldScenarios]
+     * @param yieldProbabilities their probabilities [nProducts][nDistributions][nReducedYieldScenarios]
+     * @param demands the demands of each product [nProducts][nReducedDemandScenarios]
+     * @param demandProbabilities their probabilities [nProducts][nReducedDemandScenarios]
+     * @return the problem with the given scenarios
+     * @throws IOException
+     */
+    private static ProductionPlanningProblemWithSalvageRevenue copy(ProductionPlanningProblemWithSalvageRevenue pp, int yieldScenarios[][][], double yieldProbabilities[][][],
+                                                                   double demands[][], double demandProbabilities[][]) throws IOException {
+        ScenarioStore scenarios = pp.getScenarioStore();
+        int nFacilities = pp.getnFacilities();
+        int nReducedYieldScenarios[][] = new int[yieldScenarios.length][];
+        for(int p = 0; p < yieldScenarios.length; p++){
+            nReducedYieldScenarios[p] = new int[yieldScenarios[p].length];
+            for(int d = 0; d < yieldScenarios[p].length; d++){
+                nReducedYieldScenarios[p][d] = yieldScenarios[p][d].length;
+            }
+        }
+        ArrayScenarioStore reduced = ArrayScenarioStore.create(nFacilities, nReducedYieldScenarios, demandProbabilities, demands,
+                scenarios instanceof FloatScenarioStore, scenarios instanceof OffHeapScenarioStore);
+        IntStream.range(0, yieldScenarios.length).parallel().forEach(p -> {
+            double yields[] = new double[nFacilities];
+            for(int d = 0; d < yieldScenarios[p].length; d++){
+                for(int sy = 0; sy < yieldScenarios[p][d].length; sy++){
+                    for(int f = 0; f < nFacilities; f++){
+                        yields[f] = scenarios.getYield(p,d,yieldScenarios[p][d][sy],f);
+                    }
+                    reduced.setYieldScenario(p, d, sy, yieldProbabilities[p][d][sy], yields);
+                }
+            }
+        });
+        return pp.withScenarioStore(reduced);
+    }
+
+    public int getnReducedYieldScenarios(int product, int distribution) {
+        return nReducedYieldScenarios[product-1][distribution-1];
+    }
+
+    public int getnReducedDemandScenarios(int product) {
+        return nReducedDemandScenarios[product-1];
+    }
+
+    /**
+     * Returns the Kantorovich distance between the original and the selected yield scenarios.
+     * @param product
+     * @param distribution
+     * @return
+     */
+    public double getYieldDistance(int product, int distribution) {
+        return yieldDistances[product-1][distribution-1];
+    }
+
+    /**
+     * Returns the Kantorovich distance between the original and the selected demand scenarios.
+     * @param product
+     * @return
+     */
+    public double getDemandDistance(int product) {
+        return demandDistances[product-1];
+    }
+
+    /**
+     * Returns a bound on the change of the expected profit of the product under the distribution, whatever the quantities produced.
+     * @param product
+     * @param distribution
+     * @return
+     */
+    public double getDistance(int product, int distribution) {
+        return distances[product-1][distribution-1];
+    }
+
+    /**
+     * The distance between two scenarios of a factor.
+     */
+    private interface Distance {
+        double between(int i, int j);
+    }
+
+    /**
+     * The scenarios selected in a factor, with their probabilities and the distance to the original scenarios.
+     */
+    private static final class Selection {
+        private final int scenarios[];
+        private final double probabilities[];
+        private final double distance;
+
+        private Selection(int scenarios[], double probabilities[], double distance) {
+            this.scenarios = scenarios;
+            this.probabilities = probabilities;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * A yield vector used as a key, equal to another if all yields are equal.
+     */
+    private static final class YieldVector {
+        private final double yields[];
+        private final int hash;
+
+        private YieldVector(double yields[]) {
+            this.yields = yields;
+            this.hash = Arrays.hashCode(yields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof YieldVector && Arrays.equals(yields, ((YieldVector) o).yields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
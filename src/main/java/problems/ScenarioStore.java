@@ -0,0 +1,43 @@
+package problems;
+
+/**
+ * Stores the yield and demand scenarios of an instance of the production planning problem.
+ * The yield scenarios are specific to each product and distribution, while the demand scenarios are specific to each product.
+ * Unlike the getters of ProductionPlanningProblem, all indices are zero-based, so that the hot loops do not shift them.
+ */
+public interface ScenarioStore {
+
+    int getnFacilities();
+
+    int getnProducts();
+
+    int getnDistributions(int product);
+
+    int getnYieldScenarios(int product, int distribution);
+
+    double getYieldScenarioProbability(int product, int distribution, int yieldScenario);
+
+    double getYield(int product, int distribution, int yieldScenario, int facility);
+
+    /**
+     * Computes the total production realized in a yield scenario, that is, sum_f yield_f * quantities[f].
+     * @param product
+     * @param distribution
+     * @param yieldScenario
+     * @param quantities the quantity of the product produced at each facility [nFacilities]
+     * @return
+     */
+    double getTotalProduction(int product, int distribution, int yieldScenario, double quantities[]);
+
+    int getnDemandScenarios(int product);
+
+    double getDemandScenarioProbability(int product, int demandScenario);
+
+    double getDemand(int product, int demandScenario);
+
+    /**
+     * Returns the number of bytes used by the yields and the demands.
+     * @return
+     */
+    long getScenarioBytes();
+}
@@ -0,0 +1,368 @@
+package utils;
+
+import problems.ArrayScenarioStore;
+import problems.InstanceStatistics;
+import problems.OffHeapScenarioStore;
+import problems.ProductionPlanningProblemWithSalvageRevenue;
+import problems.ScenarioStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Reads and writes instances in a binary format, which loads much faster than the text format read by DataReader.
+ * A text instance is converted once with
+ *
+ *     java utils.BinaryInstanceFile path/to/instance.txt path/to/instance.bin
+ *
+ * and the binary file can then be passed to Main instead of the text file.
+ *
+ * The file starts with a header (magic number, version, SHA-256 hash of the content and position of the yield scenarios),
+ * followed by the data of the instance in the order of the text format and by the yield scenarios, stored as in
+ * ArrayScenarioStore. The yield scenarios are aligned on 8 bytes and are copied with bulk gets from memory-mapped buffers.
+ * The upper bounds of the production levels are stored without offset, which is applied when the instance is read.
+ *
+ * The derived data (the statistics of the instance) are cached in a file next to the instance, together with the
+ * hash of the instance, the offset and the precision they were computed with. The cache is used only if they match, and is rewritten otherwise.
+ */
+public class BinaryInstanceFile {
+    private static final int MAGIC = 0x50504249; // "PPBI"
+    private static final int VERSION = 1;
+    private static final int CACHE_MAGIC = 0x50504243; // "PPBC"
+    private static final int CACHE_VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + 4 + HASH_LENGTH + 8; // Magic, version, hash, position of the yield scenarios
+    private static final String CACHE_EXTENSION = ".derived";
+    private static final int MAX_MAPPED_DOUBLES = Integer.MAX_VALUE / Double.BYTES; // The largest number of doubles mapped at once
+
+    /**
+     * Converts a text instance to the binary format.
+     * @param args the path to the text instance and the path to the binary instance
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 2){
+            System.out.println("Usage: java utils.BinaryInstanceFile path/to/instance.txt path/to/instance.bin");
+            return;
+        }
+        convert(args[0], args[1]);
+    }
+
+    /**
+     * Converts a text instance to the binary format.
+     * @param pathToTextFile the path to the instance in the text format read by DataReader, possibly compressed with gzip
+     * @param pathToBinaryFile the path to the binary file created
+     * @throws IOException
+     */
+    public static void convert(String pathToTextFile, String pathToBinaryFile) throws IOException {
+        long start = System.currentTimeMillis();
+        ProductionPlanningProblemWithSalvageRevenue pp = TextInstanceParser.readProblemWithSalvageRevenue(pathToTextFile, 0, false, false);
+        write(pp, pathToBinaryFile);
+        System.out.println("Converted "+pathToTextFile+" to "+pathToBinaryFile+" in "+(System.currentTimeMillis() - start)/1000.0+" seconds.");
+    }
+
+    /**
+     * Writes an instance, read with a null offset, in the binary format.
+     * @param pp an instance of the production planning problem
+     * @param pathToBinaryFile the path to the binary file created
+     * @throws IOException
+     */
+    public static void write(ProductionPlanningProblemWithSalvageRevenue pp, String pathToBinaryFile) throws IOException {
+        MessageDigest digest = newDigest();
+        long yieldScenariosPosition;
+        try(BufferedOutputStream file = new BufferedOutputStream(new FileOutputStream(pathToBinaryFile), 1 << 16);
+            DataOutputStream out = new DataOutputStream(new DigestOutputStream(file, digest))){
+            // The header is completed once the content is written, and is not part of the hash
+            file.write(new byte[HEADER_LENGTH]);
+            out.writeInt(pp.getnFacilities());
+            out.writeInt(pp.getnProducts());
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                out.writeDouble(pp.getTotalCapacity(f));
+            }
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                out.writeDouble(pp.getLeftoverCosts(p));
+                out.writeDouble(pp.getSalesPrice(p));
+            }
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                for(int p = 1; p <= pp.getnProducts(); p++){
+                    out.writeDouble(pp.getManufacturingCosts(f,p));
+                    out.writeInt(pp.getnProductionLevels(f,p));
+                    for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                        out.writeDouble(pp.getProductionLevelLowerBound(f,p,l));
+                        out.writeDouble(pp.getProductionLevelUpperBound(f,p,l));
+                    }
+                }
+            }
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                out.writeInt(pp.getnDistributions(p));
+                for(int d = 1; d <= pp.getnDistributions(p); d++){
+                    byte name[] = pp.getDistributionName(p,d).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(name.length);
+                    out.write(name);
+                    for(int f = 1; f <= pp.getnFacilities(); f++){
+                        out.writeInt(pp.getDistributionProductionLevels(p,d,f));
+                    }
+                    out.writeInt(pp.getnYieldScenarios(p,d));
+                }
+            }
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                out.writeInt(pp.getnDemandScenarios(p));
+                for(int sd = 1; sd <= pp.getnDemandScenarios(p); sd++){
+                    out.writeDouble(pp.getDemandScenarioProbability(p,sd));
+                    out.writeDouble(pp.getDemandScenarioRealization(p,sd));
+                }
+            }
+
+            // The yield scenarios, aligned on 8 bytes from the beginning of the file
+            while((HEADER_LENGTH + out.size()) % Double.BYTES != 0){
+                out.writeByte(0);
+            }
+            yieldScenariosPosition = HEADER_LENGTH + out.size();
+            ScenarioStore scenarios = pp.getScenarioStore();
+            for(int p = 0; p < pp.getnProducts(); p++){
+                for(int d = 0; d < pp.getnDistributions(p+1); d++){
+                    for(int sy = 0; sy < scenarios.getnYieldScenarios(p,d); sy++){
+                        out.writeDouble(scenarios.getYieldScenarioProbability(p,d,sy));
+                    }
+                }
+            }
+            for(int p = 0; p < pp.getnProducts(); p++){
+                for(int d = 0; d < pp.getnDistributions(p+1); d++){
+                    for(int sy = 0; sy < scenarios.getnYieldScenarios(p,d); sy++){
+                        for(int f = 0; f < pp.getnFacilities(); f++){
+                            out.writeDouble(scenarios.getYield(p,d,sy,f));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Completes the header
+        try(RandomAccessFile file = new RandomAccessFile(pathToBinaryFile, "rw")){
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.write(digest.digest());
+            file.writeLong(yieldScenariosPosition);
+        }
+    }
+
+    /**
+     * Checks whether the file is a binary instance.
+     * @param pathToFile
+     * @return
+     * @throws IOException
+     */
+    public static boolean isBinaryInstance(String pathToFile) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(pathToFile), StandardOpenOption.READ)){
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a binary instance and generates the corresponding instance of the Production Planning Problem.
+     * @param pathToBinaryFile the path to the binary instance
+     * @param offset the offset between the production levels
+     * @param singlePrecision whether the yields and the demands are stored in single precision
+     * @param offHeap whether the yield scenarios are stored off-heap, in which case they are mapped from the file without any copy
+     * @return
+     * @throws IOException
+     */
+    public static ProductionPlanningProblemWithSalvageRevenue read(String pathToBinaryFile, double offset, boolean singlePrecision, boolean offHeap) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(pathToBinaryFile), StandardOpenOption.READ)){
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            if(header.getInt() != MAGIC){
+                throw new IOException(pathToBinaryFile+" is not a binary instance");
+            }
+            int version = header.getInt();
+            if(version != VERSION){
+                throw new IOException("Unsupported version "+version+" of "+pathToBinaryFile);
+            }
+            byte hash[] = new byte[HASH_LENGTH];
+            header.get(hash);
+            long yieldScenariosPosition = header.getLong();
+
+            // The data of the instance
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, yieldScenariosPosition - HEADER_LENGTH);
+            int nFacilities = in.getInt();
+            int nProducts = in.getInt();
+            double totalCapacities[] = new double[nFacilities];
+            in.asDoubleBuffer().get(totalCapacities);
+            in.position(in.position() + Double.BYTES * nFacilities);
+            double leftoverCosts[] = new double[nProducts];
+            double salesPrices[] = new double[nProducts];
+            for(int p = 1; p <= nProducts; p++){
+                leftoverCosts[p-1] = in.getDouble();
+                salesPrices[p-1] = in.getDouble();
+            }
+            double manufacturingCosts[][] = new double[nFacilities][nProducts];
+            int nProductionLevels[][] = new int[nFacilities][nProducts];
+            double productionLevelLowerBounds[][][] = new double[nFacilities][nProducts][];
+            double productionLevelUpperBounds[][][] = new double[nFacilities][nProducts][];
+            for(int f = 1; f <= nFacilities; f++){
+                for(int p = 1; p <= nProducts; p++){
+                    manufacturingCosts[f-1][p-1] = in.getDouble();
+                    nProductionLevels[f-1][p-1] = in.getInt();
+                    productionLevelLowerBounds[f-1][p-1] = new double[nProductionLevels[f-1][p-1]];
+                    productionLevelUpperBounds[f-1][p-1] = new double[nProductionLevels[f-1][p-1]];
+                    for(int l = 1; l <= nProductionLevels[f-1][p-1]; l++){
+                        productionLevelLowerBounds[f-1][p-1][l-1] = in.getDouble();
+                        productionLevelUpperBounds[f-1][p-1][l-1] = in.getDouble() - offset;
+                    }
+                }
+            }
+            int nDistributions[] = new int[nProducts];
+            int maxNDistributions = 0;
+            int distributionProductionLevels[][][] = new int[nProducts][][];
+            String distributionNames[][] = new String[nProducts][];
+            int nYieldScenarios[][] = new int[nProducts][];
+            for(int p = 1; p <= nProducts; p++){
+                nDistributions[p-1] = in.getInt();
+                maxNDistributions = Math.max(maxNDistributions, nDistributions[p-1]);
+                distributionProductionLevels[p-1] = new int[nDistributions[p-1]][nFacilities];
+                distributionNames[p-1] = new String[nDistributions[p-1]];
+                nYieldScenarios[p-1] = new int[nDistributions[p-1]];
+                for(int d = 1; d <= nDistributions[p-1]; d++){
+                    byte name[] = new byte[in.getInt()];
+                    in.get(name);
+                    distributionNames[p-1][d-1] = new String(name, StandardCharsets.UTF_8);
+                    for(int f = 1; f <= nFacilities; f++){
+                        distributionProductionLevels[p-1][d-1][f-1] = in.getInt();
+                    }
+                    nYieldScenarios[p-1][d-1] = in.getInt();
+                }
+            }
+            double demandScenarioProbabilities[][] = new double[nProducts][];
+            double demandScenarioRealizations[][] = new double[nProducts][];
+            for(int p = 1; p <= nProducts; p++){
+                int nDemandScenarios = in.getInt();
+                demandScenarioProbabilities[p-1] = new double[nDemandScenarios];
+                demandScenarioRealizations[p-1] = new double[nDemandScenarios];
+                for(int sd = 1; sd <= nDemandScenarios; sd++){
+                    demandScenarioProbabilities[p-1][sd-1] = in.getDouble();
+                    demandScenarioRealizations[p-1][sd-1] = in.getDouble();
+                }
+            }
+
+            ScenarioStore scenarios;
+            if(offHeap){
+                if(singlePrecision){
+                    throw new IllegalArgumentException("The off-heap store is only available in double precision");
+                }
+                // The yield scenarios are used where they are in the file
+                scenarios = new OffHeapScenarioStore(nFacilities, nYieldScenarios, demandScenarioProbabilities, demandScenarioRealizations, channel, yieldScenariosPosition);
+            } else {
+                // The yield scenarios, mapped in blocks small enough for a single mapping
+                ArrayScenarioStore store = ArrayScenarioStore.create(nFacilities, nYieldScenarios, demandScenarioProbabilities, demandScenarioRealizations, singlePrecision, false);
+                int nYieldScenariosTotal = store.getnYieldScenariosTotal();
+                long position = yieldScenariosPosition;
+                for(int first = 0; first < nYieldScenariosTotal; first = first + MAX_MAPPED_DOUBLES){
+                    int length = Math.min(MAX_MAPPED_DOUBLES, nYieldScenariosTotal - first);
+                    store.setYieldScenarioProbabilities(first, map(channel, position, length));
+                    position = position + (long) Double.BYTES * length;
+                }
+                long nYields = (long) nYieldScenariosTotal * nFacilities;
+                for(long first = 0; first < nYields; first = first + MAX_MAPPED_DOUBLES){
+                    int length = (int) Math.min(MAX_MAPPED_DOUBLES, nYields - first);
+                    store.setYields((int) first, map(channel, position, length));
+                    position = position + (long) Double.BYTES * length;
+                }
+                scenarios = store;
+            }
+
+            InstanceStatistics statistics = readCache(pathToBinaryFile, hash, offset, singlePrecision);
+            ProductionPlanningProblemWithSalvageRevenue pp = new ProductionPlanningProblemWithSalvageRevenue(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
+                    nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
+                    nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
+                    scenarios, statistics);
+            if(statistics == null){
+                writeCache(pathToBinaryFile, hash, offset, singlePrecision, pp.getStatistics());
+            }
+            return pp;
+        }
+    }
+
+    private static DoubleBuffer map(FileChannel channel, long position, int nDoubles) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) Double.BYTES * nDoubles);
+        return buffer.asDoubleBuffer();
+    }
+
+    /**
+     * Reads the statistics cached for the instance.
+     * @param pathToBinaryFile the path to the binary instance
+     * @param hash the hash of the content of the instance
+     * @param offset the offset between the production levels
+     * @param singlePrecision whether the yields and the demands are stored in single precision
+     * @return the statistics, or null if there is no valid cache
+     */
+    private static InstanceStatistics readCache(String pathToBinaryFile, byte hash[], double offset, boolean singlePrecision) {
+        Path path = Paths.get(pathToBinaryFile + CACHE_EXTENSION);
+        if(!Files.exists(path)){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte cachedHash[] = new byte[HASH_LENGTH];
+            if(in.getInt() != CACHE_MAGIC || in.getInt() != CACHE_VERSION){
+                return null;
+            }
+            in.get(cachedHash);
+            if(!Arrays.equals(hash, cachedHash) || Double.doubleToLongBits(in.getDouble()) != Double.doubleToLongBits(offset)
+                    || (in.get() == 1) != singlePrecision){
+                System.out.println("The cache "+path+" does not match the instance and is recomputed.");
+                return null;
+            }
+            return InstanceStatistics.read(in);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not read the cache "+path+": "+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the statistics of the instance in the cache. Failures only prevent the cache from being used.
+     * @param pathToBinaryFile the path to the binary instance
+     * @param hash the hash of the content of the instance
+     * @param offset the offset between the production levels
+     * @param singlePrecision whether the yields and the demands are stored in single precision
+     * @param statistics
+     */
+    private static void writeCache(String pathToBinaryFile, byte hash[], double offset, boolean singlePrecision, InstanceStatistics statistics) {
+        File cache = new File(pathToBinaryFile + CACHE_EXTENSION);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cache), 1 << 16))){
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_VERSION);
+            out.write(hash);
+            out.writeDouble(offset);
+            out.writeByte(singlePrecision ? 1 : 0);
+            statistics.write(out);
+        } catch (IOException e) {
+            System.out.println("Could not write the cache "+cache+": "+e.getMessage());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -28,6 +28,8 @@ public class CommandLineInterpreter {
         Option test_opt = new Option("t", true, "Specifies the type of test to perform.\n " +
                 "Current alternatives are:\n" +
                 "-full: solves the extensive MIP formulation of the problem.\n" +
+                "-fullTight: solves the extensive MIP formulation with the distributions disaggregated.\n" +
+                "-fullRoot: compares the LP relaxation bounds of the two extensive formulations.\n" +
                 "-bd: solves the problem using multicut Benders decomposition.");
         test_opt.setRequired(true);
         test_opt.setLongOpt("test");
@@ -81,9 +83,79 @@ public class CommandLineInterpreter {
         extended_inequalities_opt.setLongOpt("extendedCoverInequalities");
         cliOptions.addOption(extended_inequalities_opt);
 
+        Option max_covers_opt = new Option("maxCovers", true, "The largest number of minimal or extended covers added for each facility (default 100).");
+        cliOptions.addOption(max_covers_opt);
+
+        Option lifted_covers_opt = new Option("lci", false, "Whether lifted cover inequalities violated by the fractional solutions are separated.");
+        lifted_covers_opt.setLongOpt("liftedCoverInequalities");
+        cliOptions.addOption(lifted_covers_opt);
+
         Option local_branching_opt = new Option("localBranching", false, "Whether local branching is used.");
         cliOptions.addOption(local_branching_opt);
 
+        Option cut_generation_threads_opt = new Option("cgThreads", true, "The number of threads evaluating the products when generating optimality cuts (1 corresponds to sequential generation -- default 1).");
+        cut_generation_threads_opt.setLongOpt("cutGenerationThreads");
+        cliOptions.addOption(cut_generation_threads_opt);
+
+        Option threads_opt = new Option("threads", true, "The number of threads used by CPLEX (0 lets CPLEX decide -- default 0).");
+        cliOptions.addOption(threads_opt);
+
+        Option generic_callback_opt = new Option("gcb", false, "Whether the optimality cuts are generated with the generic callback, which allows CPLEX to use all its threads.");
+        generic_callback_opt.setLongOpt("genericCallback");
+        cliOptions.addOption(generic_callback_opt);
+
+        Option user_cut_rounds_opt = new Option("ucRounds", true, "The maximum number of rounds of optimality cuts separated at each node from fractional solutions (0 disables them -- default 0).");
+        user_cut_rounds_opt.setLongOpt("userCutRounds");
+        cliOptions.addOption(user_cut_rounds_opt);
+
+        Option user_cut_violation_opt = new Option("ucViolation", true, "The minimum violation, relative to phi, of the optimality cuts separated from fractional solutions (default 1e-4).");
+        user_cut_violation_opt.setLongOpt("userCutViolation");
+        cliOptions.addOption(user_cut_violation_opt);
+
+        Option root_rounds_opt = new Option("rootRounds", true, "The maximum number of rounds of optimality cuts added to the LP relaxation before branching (0 disables the loop -- default 0).");
+        cliOptions.addOption(root_rounds_opt);
+
+        Option root_alpha_opt = new Option("rootAlpha", true, "The weight of the core point in the in-out stabilization of the root loop, in [0,1) (0 disables the stabilization -- default 0.5).");
+        cliOptions.addOption(root_alpha_opt);
+
+        Option root_time_opt = new Option("rootTime", true, "The time limit in seconds of the root loop (default 60).");
+        cliOptions.addOption(root_time_opt);
+
+        Option pareto_optimal_cuts_opt = new Option("mw", false, "Whether the optimality cuts are chosen to be Pareto-optimal (Magnanti-Wong) with respect to a core point.");
+        pareto_optimal_cuts_opt.setLongOpt("paretoOptimalCuts");
+        cliOptions.addOption(pareto_optimal_cuts_opt);
+
+        Option cache_opt = new Option("cache", true, "The number of evaluations of the recourse cached for each product (0 disables the cache -- default 0).");
+        cliOptions.addOption(cache_opt);
+
+        Option cache_quantum_opt = new Option("cacheQuantum", true, "The precision to which the quantities are rounded in the cache (default 1e-6).");
+        cliOptions.addOption(cache_quantum_opt);
+
+        Option single_precision_opt = new Option("sp", false, "Whether the yields and the demands are stored in single precision, which halves the memory they use.");
+        single_precision_opt.setLongOpt("singlePrecision");
+        cliOptions.addOption(single_precision_opt);
+
+        Option off_heap_opt = new Option("offHeap", false, "Whether the yield scenarios are stored off-heap, in memory-mapped files.");
+        cliOptions.addOption(off_heap_opt);
+
+        Option no_names_opt = new Option("noNames", false, "Whether the variables of the extensive form are created without names, which saves memory in full and autobd.");
+        cliOptions.addOption(no_names_opt);
+
+        Option dedup_opt = new Option("dedup", false, "Whether the identical yield scenarios and demands are merged when the instance is read.");
+        cliOptions.addOption(dedup_opt);
+
+        Option reduce_opt = new Option("reduce", true, "The largest number of yield scenarios kept for each product and distribution, and of demand scenarios kept for each product, by forward selection (default no reduction).");
+        cliOptions.addOption(reduce_opt);
+
+        Option reduce_tol_opt = new Option("reduceTol", true, "The distance at which the forward selection stops, relative to the distance of a single scenario (default 0).");
+        cliOptions.addOption(reduce_tol_opt);
+
+        Option benders_partition_opt = new Option("abdPartition", true, "The partition of the variables in autobd: auto lets Cplex choose it, product, distribution and cluster put the recourse of each product, distribution or cluster of scenarios in its own subproblem (default auto).");
+        cliOptions.addOption(benders_partition_opt);
+
+        Option benders_clusters_opt = new Option("abdClusters", true, "The number of clusters of consecutive scenarios of each distribution in the cluster partition of autobd (default 4).");
+        cliOptions.addOption(benders_clusters_opt);
+
     }
 
     /**
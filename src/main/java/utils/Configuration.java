@@ -21,8 +21,29 @@ public class Configuration {
     private boolean validInequality6 = false;
     private boolean minimalCoverInequalities = false;
     private boolean extendedCoverInequalities = false;
+    private int maxCovers = 100;
+    private boolean liftedCoverInequalities = false;
     private boolean localBranching = false;
     private double offset = 0;
+    private int cutGenerationThreads = 1;
+    private int threads = 0;
+    private boolean genericCallback = false;
+    private int userCutRounds = 0;
+    private double userCutMinViolation = 1e-4;
+    private int rootRounds = 0;
+    private double rootStabilizationFactor = 0.5;
+    private double rootTimeLimit = 60;
+    private boolean paretoOptimalCuts = false;
+    private int recourseCacheSize = 0;
+    private double recourseCacheQuantum = 1e-6;
+    private boolean singlePrecision = false;
+    private boolean offHeap = false;
+    private boolean variableNames = true;
+    private boolean deduplicate = false;
+    private int reductionSize = Integer.MAX_VALUE;
+    private double reductionTolerance = 0;
+    private String bendersPartition = "auto";
+    private int bendersClusters = 4;
 
 
     public Configuration(String[] args, Options options) throws ParseException {
@@ -127,11 +148,178 @@ public class Configuration {
             System.out.println("Using minimal cover inequalities");
         }
 
+        // Reads the largest number of covers generated for each facility.
+        if(cmd.hasOption("maxCovers")){
+            maxCovers = Integer.parseInt(cmd.getOptionValue("maxCovers"));
+            if(maxCovers < 1){
+                throw new IllegalArgumentException("Invalid number of covers");
+            }
+        }
+
+        liftedCoverInequalities = cmd.hasOption("lci");
+        if(liftedCoverInequalities){
+            System.out.println("Separating lifted cover inequalities");
+        }
+
         localBranching = cmd.hasOption("localBranching");
         if(localBranching){
             System.out.println("Using Local Branching");
         }
 
+        // Reads the number of threads used to generate optimality cuts.
+        if(cmd.hasOption("cgThreads")){
+            cutGenerationThreads = Integer.parseInt(cmd.getOptionValue("cgThreads"));
+            if(cutGenerationThreads <= 0){
+                throw new IllegalArgumentException("Invalid number of cut generation threads");
+            }
+        }
+        System.out.println("Cut generation threads "+cutGenerationThreads+".");
+
+        // Reads the number of threads used by CPLEX (0 lets CPLEX decide).
+        if(cmd.hasOption("threads")){
+            threads = Integer.parseInt(cmd.getOptionValue("threads"));
+            if(threads < 0){
+                throw new IllegalArgumentException("Invalid number of threads");
+            }
+        }
+        System.out.println("Threads "+threads+".");
+
+        genericCallback = cmd.hasOption("gcb");
+        if(genericCallback){
+            System.out.println("Using the generic callback");
+        }
+
+        // Reads the number of rounds of optimality cuts separated at each node from fractional solutions.
+        if(cmd.hasOption("ucRounds")){
+            userCutRounds = Integer.parseInt(cmd.getOptionValue("ucRounds"));
+            if(userCutRounds < 0){
+                throw new IllegalArgumentException("Invalid number of user cut rounds");
+            }
+        }
+        System.out.println("User cut rounds "+userCutRounds+".");
+
+        // Reads the minimum relative violation of the optimality cuts separated from fractional solutions.
+        if(cmd.hasOption("ucViolation")){
+            userCutMinViolation = Double.parseDouble(cmd.getOptionValue("ucViolation"));
+            if(userCutMinViolation < 0){
+                throw new IllegalArgumentException("Invalid user cut violation");
+            }
+        }
+        System.out.println("User cut minimum violation "+userCutMinViolation+".");
+
+        // Reads the maximum number of rounds of the cutting plane loop performed before branching.
+        if(cmd.hasOption("rootRounds")){
+            rootRounds = Integer.parseInt(cmd.getOptionValue("rootRounds"));
+            if(rootRounds < 0){
+                throw new IllegalArgumentException("Invalid number of root rounds");
+            }
+        }
+        System.out.println("Root rounds "+rootRounds+".");
+
+        // Reads the stabilization factor of the root cutting plane loop.
+        if(cmd.hasOption("rootAlpha")){
+            rootStabilizationFactor = Double.parseDouble(cmd.getOptionValue("rootAlpha"));
+            if(rootStabilizationFactor < 0 || rootStabilizationFactor >= 1){
+                throw new IllegalArgumentException("Invalid root stabilization factor");
+            }
+        }
+        System.out.println("Root stabilization factor "+rootStabilizationFactor+".");
+
+        // Reads the time limit of the root cutting plane loop.
+        if(cmd.hasOption("rootTime")){
+            rootTimeLimit = Double.parseDouble(cmd.getOptionValue("rootTime"));
+            if(rootTimeLimit <= 0){
+                throw new IllegalArgumentException("Invalid root time limit");
+            }
+        }
+        System.out.println("Root time limit "+rootTimeLimit+".");
+
+        paretoOptimalCuts = cmd.hasOption("mw");
+        if(paretoOptimalCuts){
+            System.out.println("Using Pareto-optimal cuts");
+        }
+
+        // Reads the number of evaluations of the recourse cached for each product.
+        if(cmd.hasOption("cache")){
+            recourseCacheSize = Integer.parseInt(cmd.getOptionValue("cache"));
+            if(recourseCacheSize < 0){
+                throw new IllegalArgumentException("Invalid cache size");
+            }
+        }
+        System.out.println("Recourse cache size "+recourseCacheSize+".");
+
+        // Reads the precision to which the quantities are rounded in the cache.
+        if(cmd.hasOption("cacheQuantum")){
+            recourseCacheQuantum = Double.parseDouble(cmd.getOptionValue("cacheQuantum"));
+            if(recourseCacheQuantum <= 0){
+                throw new IllegalArgumentException("Invalid cache quantum");
+            }
+        }
+
+        singlePrecision = cmd.hasOption("sp");
+        if(singlePrecision){
+            System.out.println("Storing the yields and the demands in single precision");
+        }
+
+        offHeap = cmd.hasOption("offHeap");
+        if(offHeap){
+            if(singlePrecision){
+                throw new IllegalArgumentException("The off-heap store is only available in double precision");
+            }
+            System.out.println("Storing the yield scenarios off-heap");
+        }
+
+        variableNames = !cmd.hasOption("noNames");
+        if(!variableNames){
+            System.out.println("Creating the variables of the extensive form without names");
+        }
+
+        deduplicate = cmd.hasOption("dedup");
+        if(deduplicate){
+            System.out.println("Merging the identical scenarios");
+        }
+
+        // Reads the largest number of scenarios kept in each factor by the scenario reduction.
+        if(cmd.hasOption("reduce")){
+            reductionSize = Integer.parseInt(cmd.getOptionValue("reduce"));
+            if(reductionSize < 1){
+                throw new IllegalArgumentException("Invalid number of scenarios kept by the reduction");
+            }
+            System.out.println("Keeping at most "+reductionSize+" scenarios in each factor");
+        }
+
+        // Reads the relative distance at which the scenario reduction stops.
+        if(cmd.hasOption("reduceTol")){
+            reductionTolerance = Double.parseDouble(cmd.getOptionValue("reduceTol"));
+            if(reductionTolerance < 0 || reductionTolerance >= 1){
+                throw new IllegalArgumentException("Invalid reduction tolerance");
+            }
+            System.out.println("Reducing the scenarios to a relative distance of "+reductionTolerance);
+        }
+
+        // The precision test reads the instance again, and compares the scenarios of both readings one by one
+        if(test.equalsIgnoreCase("precision") && (deduplicate || reduceScenarios())){
+            throw new IllegalArgumentException("The scenarios cannot be merged or reduced in the precision test");
+        }
+
+        // Reads the partition of the variables given to the automatic Benders decomposition.
+        if(cmd.hasOption("abdPartition")){
+            bendersPartition = cmd.getOptionValue("abdPartition");
+            if(!bendersPartition.equalsIgnoreCase("auto") && !bendersPartition.equalsIgnoreCase("product")
+                    && !bendersPartition.equalsIgnoreCase("distribution") && !bendersPartition.equalsIgnoreCase("cluster")){
+                throw new IllegalArgumentException("Invalid Benders partition "+bendersPartition);
+            }
+            System.out.println("Partitioning the automatic Benders decomposition by "+bendersPartition);
+        }
+
+        // Reads the number of scenario clusters of each distribution in the cluster partition.
+        if(cmd.hasOption("abdClusters")){
+            bendersClusters = Integer.parseInt(cmd.getOptionValue("abdClusters"));
+            if(bendersClusters < 1){
+                throw new IllegalArgumentException("Invalid number of scenario clusters");
+            }
+        }
+
 
     }
 
@@ -203,6 +391,14 @@ public class Configuration {
         return extendedCoverInequalities;
     }
 
+    public int getMaxCovers() {
+        return maxCovers;
+    }
+
+    public boolean separateLiftedCovers() {
+        return liftedCoverInequalities;
+    }
+
     public boolean useLocalBranching() {
         return localBranching;
     }
@@ -210,4 +406,84 @@ public class Configuration {
     public double getOffset() {
         return offset;
     }
+
+    public int getCutGenerationThreads() {
+        return cutGenerationThreads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean useGenericCallback() {
+        return genericCallback;
+    }
+
+    public int getUserCutRounds() {
+        return userCutRounds;
+    }
+
+    public double getUserCutMinViolation() {
+        return userCutMinViolation;
+    }
+
+    public int getRootRounds() {
+        return rootRounds;
+    }
+
+    public double getRootStabilizationFactor() {
+        return rootStabilizationFactor;
+    }
+
+    public double getRootTimeLimit() {
+        return rootTimeLimit;
+    }
+
+    public boolean useParetoOptimalCuts() {
+        return paretoOptimalCuts;
+    }
+
+    public int getRecourseCacheSize() {
+        return recourseCacheSize;
+    }
+
+    public double getRecourseCacheQuantum() {
+        return recourseCacheQuantum;
+    }
+
+    public boolean useSinglePrecision() {
+        return singlePrecision;
+    }
+
+    public boolean useOffHeapStore() {
+        return offHeap;
+    }
+
+    public boolean useVariableNames() {
+        return variableNames;
+    }
+
+    public boolean deduplicateScenarios() {
+        return deduplicate;
+    }
+
+    public boolean reduceScenarios() {
+        return reductionSize < Integer.MAX_VALUE || reductionTolerance > 0;
+    }
+
+    public int getReductionSize() {
+        return reductionSize;
+    }
+
+    public double getReductionTolerance() {
+        return reductionTolerance;
+    }
+
+    public String getBendersPartition() {
+        return bendersPartition;
+    }
+
+    public int getBendersClusters() {
+        return bendersClusters;
+    }
 }
@@ -0,0 +1,328 @@
+package utils;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates random instances of the production planning problem in the text format read by DataReader.
+ * The instances are determined by the parameters and the seed, so that the same instance can be generated again.
+ * The file is written as it is generated, one line at a time, so that the size of the instance is only limited by the disk.
+ * If the name of the file ends with .gz, the file is compressed with gzip.
+ *
+ * Each product has a mean demand, and its demand scenarios are drawn around it. Every facility has the same number of
+ * production levels for every product. The levels of a product split the quantities up to the mean demand in equal parts,
+ * and the last level is unbounded in practice. The capacities are such that producing the mean demands at the mean yields
+ * uses the given fraction of the total capacity.
+ * Each facility has a mean yield for each product, shifted by a random effect for each production level other than the first,
+ * and the yield scenarios of a distribution are drawn around the mean yields at the levels of the distribution.
+ */
+public class InstanceGenerator {
+    private static final double MIN_YIELD = 0.01;
+    private static final double MAX_YIELD = 1;
+    private static final double LAST_LEVEL_FACTOR = 100; // The upper bound of the last level, relative to the mean demand
+    private final int nProducts;
+    private final int nFacilities;
+    private final int nProductionLevels; // The number of production levels of each product at each facility
+    private final int nDemandScenarios;
+    private final int nYieldScenarios; // The number of yield scenarios of each distribution
+    private final double tightness; // The fraction of the total capacity used by the mean demands
+    private final double demandRange[]; // The range of the mean demands [2]
+    private final double demandVariation; // The coefficient of variation of the demands
+    private final double manufacturingCostRange[]; // [2]
+    private final double salesPriceRange[]; // [2]
+    private final double leftoverRange[]; // The range of the leftover revenue, relative to the sales price [2]
+    private final double yieldRange[]; // The range of the mean yields [2]
+    private final double levelEffect; // The largest shift of the mean yield caused by a production level
+    private final double yieldDeviation; // The standard deviation of the yields
+    private final long seed;
+
+    public InstanceGenerator(int nProducts, int nFacilities, int nProductionLevels, int nDemandScenarios, int nYieldScenarios,
+                             double tightness, double demandRange[], double demandVariation,
+                             double manufacturingCostRange[], double salesPriceRange[], double leftoverRange[],
+                             double yieldRange[], double levelEffect, double yieldDeviation, long seed) {
+        if(nProducts < 1 || nFacilities < 1 || nProductionLevels < 1 || nDemandScenarios < 1 || nYieldScenarios < 1){
+            throw new IllegalArgumentException("The numbers of products, facilities, levels and scenarios must be positive");
+        }
+        if(tightness <= 0){
+            throw new IllegalArgumentException("Invalid capacity tightness");
+        }
+        checkRange(demandRange, 0, Double.POSITIVE_INFINITY, "demand");
+        checkRange(manufacturingCostRange, 0, Double.POSITIVE_INFINITY, "manufacturing cost");
+        checkRange(salesPriceRange, 0, Double.POSITIVE_INFINITY, "sales price");
+        checkRange(leftoverRange, 0, 1, "leftover revenue");
+        checkRange(yieldRange, MIN_YIELD, MAX_YIELD, "yield");
+        // The distributions of a product enumerate the levels of all facilities
+        double nDistributions = Math.pow(nProductionLevels, nFacilities);
+        if(nDistributions * nYieldScenarios * nProducts > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Too many yield scenarios: "+nProducts+" products with "+nDistributions+" distributions of "+nYieldScenarios+" scenarios");
+        }
+        this.nProducts = nProducts;
+        this.nFacilities = nFacilities;
+        this.nProductionLevels = nProductionLevels;
+        this.nDemandScenarios = nDemandScenarios;
+        this.nYieldScenarios = nYieldScenarios;
+        this.tightness = tightness;
+        this.demandRange = demandRange;
+        this.demandVariation = demandVariation;
+        this.manufacturingCostRange = manufacturingCostRange;
+        this.salesPriceRange = salesPriceRange;
+        this.leftoverRange = leftoverRange;
+        this.yieldRange = yieldRange;
+        this.levelEffect = levelEffect;
+        this.yieldDeviation = yieldDeviation;
+        this.seed = seed;
+    }
+
+    private static void checkRange(double range[], double lowest, double highest, String name) {
+        if(range.length != 2 || range[0] > range[1] || range[0] < lowest || range[1] > highest){
+            throw new IllegalArgumentException("Invalid "+name+" range");
+        }
+    }
+
+    /**
+     * Generates an instance.
+     * @param args the parameters of the instance, see the README
+     * @throws ParseException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws ParseException, IOException {
+        Options options = new Options();
+        Option output_opt = new Option("o", true, "The path to the instance file created (compressed with gzip if it ends with .gz).");
+        output_opt.setRequired(true);
+        options.addOption(output_opt);
+        options.addOption(new Option("p", true, "The number of products (default 2)."));
+        options.addOption(new Option("f", true, "The number of facilities (default 3)."));
+        options.addOption(new Option("l", true, "The number of production levels of each product at each facility (default 2)."));
+        options.addOption(new Option("ds", true, "The number of demand scenarios (default 2)."));
+        options.addOption(new Option("ys", true, "The number of yield scenarios of each distribution (default 2)."));
+        options.addOption(new Option("tight", true, "The fraction of the total capacity used by the mean demands at the mean yields (default 0.6)."));
+        options.addOption(new Option("demand", true, "The range of the mean demands, as min,max (default 2000,12000)."));
+        options.addOption(new Option("cv", true, "The coefficient of variation of the demands (default 0.2)."));
+        options.addOption(new Option("cost", true, "The range of the manufacturing costs, as min,max (default 30,90)."));
+        options.addOption(new Option("price", true, "The range of the sales prices, as min,max (default 100,200)."));
+        options.addOption(new Option("leftover", true, "The range of the leftover revenues relative to the sales prices, as min,max (default 0.1,0.25)."));
+        options.addOption(new Option("yield", true, "The range of the mean yields, as min,max (default 0.4,0.9)."));
+        options.addOption(new Option("levelEffect", true, "The largest shift of the mean yield caused by a production level (default 0.1)."));
+        options.addOption(new Option("yieldDev", true, "The standard deviation of the yields (default 0.1)."));
+        options.addOption(new Option("seed", true, "The seed of the random generator (default 0)."));
+        CommandLine cmd = new DefaultParser().parse(options, args);
+
+        InstanceGenerator generator = new InstanceGenerator(
+                Integer.parseInt(cmd.getOptionValue("p", "2")),
+                Integer.parseInt(cmd.getOptionValue("f", "3")),
+                Integer.parseInt(cmd.getOptionValue("l", "2")),
+                Integer.parseInt(cmd.getOptionValue("ds", "2")),
+                Integer.parseInt(cmd.getOptionValue("ys", "2")),
+                Double.parseDouble(cmd.getOptionValue("tight", "0.6")),
+                parseRange(cmd.getOptionValue("demand", "2000,12000")),
+                Double.parseDouble(cmd.getOptionValue("cv", "0.2")),
+                parseRange(cmd.getOptionValue("cost", "30,90")),
+                parseRange(cmd.getOptionValue("price", "100,200")),
+                parseRange(cmd.getOptionValue("leftover", "0.1,0.25")),
+                parseRange(cmd.getOptionValue("yield", "0.4,0.9")),
+                Double.parseDouble(cmd.getOptionValue("levelEffect", "0.1")),
+                Double.parseDouble(cmd.getOptionValue("yieldDev", "0.1")),
+                Long.parseLong(cmd.getOptionValue("seed", "0")));
+        generator.write(cmd.getOptionValue("o"));
+    }
+
+    private static double[] parseRange(String value) {
+        String tokens[] = value.split(",");
+        if(tokens.length != 2){
+            throw new IllegalArgumentException("Invalid range "+value);
+        }
+        return new double[]{Double.parseDouble(tokens[0]), Double.parseDouble(tokens[1])};
+    }
+
+    /**
+     * Generates the instance and writes it to the given file.
+     * @param pathToInstanceFile the path to the instance file created, compressed with gzip if it ends with .gz
+     * @throws IOException
+     */
+    public void write(String pathToInstanceFile) throws IOException {
+        long start = System.currentTimeMillis();
+        OutputStream stream = new FileOutputStream(pathToInstanceFile);
+        if(pathToInstanceFile.endsWith(".gz")){
+            stream = new GZIPOutputStream(stream, 1 << 16);
+        }
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII), 1 << 20)){
+            write(out);
+        }
+        System.out.println("Generated "+pathToInstanceFile+" in "+(System.currentTimeMillis() - start)/1000.0+" seconds.");
+    }
+
+    /**
+     * Generates the instance and writes it.
+     * The data, which are small, are generated first, and the yield scenarios are generated while they are written.
+     * @param out
+     * @throws IOException
+     */
+    public void write(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Products
+        double meanDemands[] = new double[nProducts];
+        double salesPrices[] = new double[nProducts];
+        double leftoverCosts[] = new double[nProducts];
+        for(int p = 1; p <= nProducts; p++){
+            meanDemands[p-1] = uniform(random, demandRange);
+            salesPrices[p-1] = uniform(random, salesPriceRange);
+            leftoverCosts[p-1] = uniform(random, leftoverRange) * salesPrices[p-1];
+        }
+
+        // Mean yields, and their shift at each level
+        double meanYields[][][] = new double[nFacilities][nProducts][nProductionLevels];
+        double averageYield = 0;
+        for(int f = 1; f <= nFacilities; f++){
+            for(int p = 1; p <= nProducts; p++){
+                double meanYield = uniform(random, yieldRange);
+                averageYield = averageYield + meanYield / (nFacilities * nProducts);
+                for(int l = 1; l <= nProductionLevels; l++){
+                    double shift = l == 1 ? 0 : levelEffect * (2 * random.nextDouble() - 1);
+                    meanYields[f-1][p-1][l-1] = clampYield(meanYield + shift);
+                }
+            }
+        }
+
+        // Capacities, split at random among the facilities
+        double totalMeanDemand = 0;
+        for(int p = 1; p <= nProducts; p++){
+            totalMeanDemand = totalMeanDemand + meanDemands[p-1];
+        }
+        double shares[] = new double[nFacilities];
+        double totalShares = 0;
+        for(int f = 1; f <= nFacilities; f++){
+            shares[f-1] = 0.9 + 0.2 * random.nextDouble();
+            totalShares = totalShares + shares[f-1];
+        }
+        double totalCapacity = totalMeanDemand / (averageYield * tightness);
+
+        StringBuilder line = new StringBuilder();
+        out.write("Number facilities,"+nFacilities+"\n");
+        out.write("Number products,"+nProducts+"\n");
+        out.write("Facility,total capacity\n");
+        for(int f = 1; f <= nFacilities; f++){
+            out.write((f-1)+","+(totalCapacity * shares[f-1] / totalShares)+"\n");
+        }
+        out.write("Product,Leftover cost,price\n");
+        for(int p = 1; p <= nProducts; p++){
+            out.write((p-1)+","+leftoverCosts[p-1]+","+salesPrices[p-1]+"\n");
+        }
+        out.write("Facility,product,man cost,num prod levels \n");
+        for(int f = 1; f <= nFacilities; f++){
+            for(int p = 1; p <= nProducts; p++){
+                out.write((f-1)+","+(p-1)+","+uniform(random, manufacturingCostRange)+","+nProductionLevels+"\n");
+            }
+        }
+        out.write("Facility,product,num prod levels,prod level,lower bound,upper bound\n");
+        for(int f = 1; f <= nFacilities; f++){
+            for(int p = 1; p <= nProducts; p++){
+                double lowerBound = 0;
+                for(int l = 1; l <= nProductionLevels; l++){
+                    double upperBound = l == nProductionLevels ? LAST_LEVEL_FACTOR * meanDemands[p-1] : meanDemands[p-1] * l / nProductionLevels;
+                    out.write((f-1)+","+(p-1)+","+nProductionLevels+","+(l-1)+","+lowerBound+","+upperBound+"\n");
+                    lowerBound = upperBound;
+                }
+            }
+        }
+
+        // Demand scenarios, with equal probabilities
+        line.setLength(0);
+        line.append("Scenario,Probability");
+        for(int p = 1; p <= nProducts; p++){
+            line.append(",Product ").append(p-1).append(" demand");
+        }
+        out.write(line.append('\n').toString());
+        double demandProbability = 1.0 / nDemandScenarios;
+        for(int sd = 1; sd <= nDemandScenarios; sd++){
+            line.setLength(0);
+            line.append(sd-1).append(',').append(demandProbability);
+            for(int p = 1; p <= nProducts; p++){
+                double demand = Math.max(0, meanDemands[p-1] * (1 + demandVariation * random.nextGaussian()));
+                line.append(',').append(demand);
+            }
+            out.write(line.append('\n').toString());
+        }
+
+        // Distributions, which enumerate the levels of the facilities with the last facility changing first
+        line.setLength(0);
+        line.append("Distribution,Product");
+        for(int f = 1; f <= nFacilities; f++){
+            line.append(", Facility ").append(f-1).append(" level");
+        }
+        out.write(line.append(",# scenarios\n").toString());
+        int nDistributions = (int) Math.pow(nProductionLevels, nFacilities);
+        int levels[] = new int[nFacilities];
+        int distribution = 0;
+        for(int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= nDistributions; d++){
+                setLevels(d, levels);
+                line.setLength(0);
+                line.append('D').append(distribution++).append(',').append(p-1);
+                for(int f = 1; f <= nFacilities; f++){
+                    line.append(',').append(levels[f-1]);
+                }
+                out.write(line.append(',').append(nYieldScenarios).append('\n').toString());
+            }
+        }
+
+        // Yield scenarios, with equal probabilities, generated as they are written
+        line.setLength(0);
+        line.append("Distribution,Product,Scenario,Probability");
+        for(int f = 1; f <= nFacilities; f++){
+            line.append(", Yield facility ").append(f-1);
+        }
+        out.write(line.append('\n').toString());
+        double yieldProbability = 1.0 / nYieldScenarios;
+        distribution = 0;
+        for(int p = 1; p <= nProducts; p++){
+            for(int d = 1; d <= nDistributions; d++){
+                setLevels(d, levels);
+                for(int sy = 1; sy <= nYieldScenarios; sy++){
+                    line.setLength(0);
+                    line.append('D').append(distribution).append(',').append(p-1).append(',').append(sy-1).append(',').append(yieldProbability);
+                    for(int f = 1; f <= nFacilities; f++){
+                        double yield = clampYield(meanYields[f-1][p-1][levels[f-1]] + yieldDeviation * random.nextGaussian());
+                        line.append(',').append(yield);
+                    }
+                    out.write(line.append('\n').toString());
+                }
+                distribution++;
+            }
+        }
+    }
+
+    /**
+     * Computes the zero-based level of each facility in the given distribution.
+     * @param distribution the distribution, from 1
+     * @param levels the array where the levels are stored [nFacilities]
+     */
+    private void setLevels(int distribution, int levels[]) {
+        int index = distribution - 1;
+        for(int f = nFacilities; f >= 1; f--){
+            levels[f-1] = index % nProductionLevels;
+            index = index / nProductionLevels;
+        }
+    }
+
+    private static double uniform(SplittableRandom random, double range[]) {
+        return range[0] + (range[1] - range[0]) * random.nextDouble();
+    }
+
+    private static double clampYield(double yield) {
+        return Math.max(MIN_YIELD, Math.min(MAX_YIELD, yield));
+    }
+}
@@ -0,0 +1,232 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
+import problems.ProductionPlanningProblem;
+
+import java.util.Arrays;
+
+/**
+ * Separates lifted cover inequalities of the capacities at fractional solutions of the master problem.
+ * Since the quantity of a product at a facility is at least the lower bound of the level chosen, the y variables of a facility
+ * satisfy the knapsack constraint sum_p sum_l lowerBound(f,p,l) * y(p,f,l) <= capacity(f), whose items are the levels with a positive
+ * lower bound.
+ * A cover is found with the usual heuristic for the separation problem: the levels are added by increasing (1 - y) / lowerBound,
+ * at most one level per product, until the capacity is exceeded, and the levels with the smallest y are then removed as long as
+ * the capacity remains exceeded, which makes the cover minimal.
+ * The cover inequality is then lifted with the superadditive lifting function of Gu, Nemhauser and Savelsbergh (2000),
+ * which gives every level out of the cover a coefficient that depends only on its lower bound (sequence-independent lifting).
+ * A separator is not thread-safe: each thread needs its own separator.
+ */
+public class LiftedCoverSeparator {
+    private final ProductionPlanningProblem pp;
+    private final OptimalityCutBuilder cutBuilder;
+    private final int products[][]; // The product of each level with a positive lower bound [nFacilities][nItems]
+    private final int levels[][]; // The level, from 1 [nFacilities][nItems]
+    private final double weights[][]; // The lower bound of the level [nFacilities][nItems]
+    private final double values[]; // The value of the y variable of each level in the solution [maxNItems]
+    private final double ratios[]; // The sort key of each level [maxNItems]
+    private final int order[]; // The levels sorted by key [maxNItems]
+    private final boolean inCover[]; // [maxNItems]
+    private final boolean usedProducts[]; // [nProducts]
+    private final double coefficients[]; // The coefficient of each level in the last inequality found [maxNItems]
+    private final double coverWeights[]; // The lower bounds of the levels of the cover, by decreasing value [nProducts]
+    private final double partialWeights[]; // The sums of the heaviest lower bounds of the cover [nProducts+1]
+    private double rhs;
+
+    /**
+     * Creates a separator.
+     * @param pp an instance of the production planning problem
+     * @param cutBuilder the builder creating the inequalities
+     */
+    public LiftedCoverSeparator(ProductionPlanningProblem pp, OptimalityCutBuilder cutBuilder) {
+        this.pp = pp;
+        this.cutBuilder = cutBuilder;
+        this.products = new int[pp.getnFacilities()][];
+        this.levels = new int[pp.getnFacilities()][];
+        this.weights = new double[pp.getnFacilities()][];
+        int maxNItems = 0;
+        for(int f = 1; f <= pp.getnFacilities(); f++){
+            int nItems = 0;
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    if(pp.getProductionLevelLowerBound(f,p,l) > 0){
+                        nItems++;
+                    }
+                }
+            }
+            products[f-1] = new int[nItems];
+            levels[f-1] = new int[nItems];
+            weights[f-1] = new double[nItems];
+            int i = 0;
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    if(pp.getProductionLevelLowerBound(f,p,l) > 0){
+                        products[f-1][i] = p;
+                        levels[f-1][i] = l;
+                        weights[f-1][i] = pp.getProductionLevelLowerBound(f,p,l);
+                        i++;
+                    }
+                }
+            }
+            maxNItems = Math.max(maxNItems, nItems);
+        }
+        this.values = new double[maxNItems];
+        this.ratios = new double[maxNItems];
+        this.order = new int[maxNItems];
+        this.inCover = new boolean[maxNItems];
+        this.usedProducts = new boolean[pp.getnProducts()];
+        this.coefficients = new double[maxNItems];
+        this.coverWeights = new double[pp.getnProducts()];
+        this.partialWeights = new double[pp.getnProducts() + 1];
+    }
+
+    /**
+     * The value of each y variable in the solution separated.
+     */
+    public interface LevelValues {
+        double getY(int product, int facility, int level);
+    }
+
+    /**
+     * Looks for a lifted cover inequality of the facility violated by the solution.
+     * If one is found, it can be built with buildCut.
+     * @param facility
+     * @param solution the values of the y variables
+     * @param minViolation the minimum violation of the inequality, relative to its right-hand side
+     * @return whether a violated inequality was found
+     */
+    public boolean separate(int facility, LevelValues solution, double minViolation) {
+        int nItems = weights[facility-1].length;
+        double capacity = pp.getTotalCapacity(facility);
+        double itemWeights[] = weights[facility-1];
+        for(int i = 0; i < nItems; i++){
+            values[i] = Math.min(1, Math.max(0, solution.getY(products[facility-1][i], facility, levels[facility-1][i])));
+            ratios[i] = (1 - values[i]) / itemWeights[i];
+            inCover[i] = false;
+        }
+        sortByRatio(nItems);
+
+        // Adds the levels by increasing ratio, one per product, until the capacity is exceeded
+        Arrays.fill(usedProducts, false);
+        double coverWeight = 0;
+        for(int k = 0; k < nItems && coverWeight <= capacity; k++){
+            int i = order[k];
+            if(!usedProducts[products[facility-1][i]-1]){
+                usedProducts[products[facility-1][i]-1] = true;
+                inCover[i] = true;
+                coverWeight = coverWeight + itemWeights[i];
+            }
+        }
+        if(coverWeight <= capacity){
+            return false;
+        }
+
+        // Removes the levels with the smallest values while the capacity remains exceeded
+        for(int i = 0; i < nItems; i++){
+            ratios[i] = values[i];
+        }
+        sortByRatio(nItems);
+        for(int k = 0; k < nItems; k++){
+            int i = order[k];
+            if(inCover[i] && coverWeight - itemWeights[i] > capacity){
+                inCover[i] = false;
+                coverWeight = coverWeight - itemWeights[i];
+            }
+        }
+
+        // Sorts the lower bounds of the cover by decreasing value
+        int coverSize = 0;
+        for(int i = 0; i < nItems; i++){
+            if(inCover[i]){
+                coverWeights[coverSize++] = itemWeights[i];
+            }
+        }
+        Arrays.sort(coverWeights, 0, coverSize);
+        for(int k = 0; k < coverSize / 2; k++){
+            double weight = coverWeights[k];
+            coverWeights[k] = coverWeights[coverSize - 1 - k];
+            coverWeights[coverSize - 1 - k] = weight;
+        }
+        partialWeights[0] = 0;
+        for(int h = 1; h <= coverSize; h++){
+            partialWeights[h] = partialWeights[h-1] + coverWeights[h-1];
+        }
+        double excess = coverWeight - capacity;
+
+        // Lifts the levels out of the cover and computes the violation
+        double lhs = 0;
+        for(int i = 0; i < nItems; i++){
+            coefficients[i] = inCover[i] ? 1 : lift(itemWeights[i], coverSize, excess);
+            lhs = lhs + coefficients[i] * values[i];
+        }
+        rhs = coverSize - 1;
+        return lhs - rhs > minViolation * Math.max(1, rhs);
+    }
+
+    /**
+     * Computes the superadditive lifting function of the cover at the given lower bound.
+     * With a_1 >= ... >= a_r the lower bounds of the cover, mu_h = a_1 + ... + a_h, lambda the excess of the cover over the capacity,
+     * and rho_h = max(0, a_(h+1) - (a_1 - lambda)), the function is
+     *    g(z) = h                                        if mu_h - lambda + rho_h <= z <= mu_(h+1) - lambda, h = 0, ..., r-1
+     *    g(z) = h - (mu_h - lambda + rho_h - z) / rho_1  if mu_h - lambda < z < mu_h - lambda + rho_h, h = 1, ..., r-1
+     * A level whose lower bound exceeds the capacity cannot be chosen, and gets the coefficient r.
+     * @param weight the lower bound of the level
+     * @param coverSize the number of levels in the cover
+     * @param excess the excess of the cover over the capacity
+     * @return the coefficient of the level
+     */
+    private double lift(double weight, int coverSize, double excess) {
+        if(weight > partialWeights[coverSize] - excess){
+            return coverSize;
+        }
+        int h = 0;
+        while(h < coverSize - 1 && weight > partialWeights[h+1] - excess){
+            h++;
+        }
+        if(h == 0){
+            return 0;
+        }
+        double rho = Math.max(0, coverWeights[h] - (coverWeights[0] - excess));
+        double rho1 = Math.max(0, coverWeights[1] - (coverWeights[0] - excess));
+        double start = partialWeights[h] - excess + rho;
+        if(weight >= start){
+            return h;
+        }
+        return h - (start - weight) / rho1;
+    }
+
+    /**
+     * Sorts the positions of the levels by increasing key, by insertion since the levels of a facility are few.
+     * @param nItems
+     */
+    private void sortByRatio(int nItems) {
+        for(int i = 0; i < nItems; i++){
+            int item = i;
+            int k = i - 1;
+            while(k >= 0 && ratios[order[k]] > ratios[item]){
+                order[k + 1] = order[k];
+                k--;
+            }
+            order[k + 1] = item;
+        }
+    }
+
+    /**
+     * Builds the inequality found last.
+     * @param facility
+     * @param y the y variables [nProducts][nFacilities][maxNProductionLevels]
+     * @return
+     * @throws IloException
+     */
+    public IloRange buildCut(int facility, IloNumVar y[][][]) throws IloException {
+        cutBuilder.clear();
+        for(int i = 0; i < weights[facility-1].length; i++){
+            if(coefficients[i] > 0){
+                cutBuilder.addTerm(coefficients[i], y[products[facility-1][i]-1][facility-1][levels[facility-1][i]-1]);
+            }
+        }
+        return cutBuilder.buildLe(rhs);
+    }
+}
@@ -0,0 +1,139 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import problems.ProductionPlanningProblem;
+
+/**
+ * A flat indexed view of a solution of a master problem.
+ * All x, y and phi variables are stored once in a flat array, so that their values can be read
+ * with a single bulk call (e.g., getValues in the callbacks) rather than one call per variable.
+ * The values are then accessed through precomputed indices.
+ * The variables and the indices are shared by all copies of a view, while each copy holds its own values,
+ * so that each thread can use its own copy.
+ * The x variables are indexed by level; master problems with a single x variable per facility use level 1.
+ */
+public class MasterSolutionView {
+    private final IloNumVar variables[]; // All variables of the master problem [nVariables]
+    private final int xIndex[][][]; // The position of each x variable in the flat array [nProducts][nFacilities][nXLevels]
+    private final int yIndex[][][]; // The position of each y variable in the flat array [nProducts][nFacilities][maxNProductionLevels]
+    private final int phiIndex[]; // The position of each phi variable in the flat array [nProducts]
+    private double values[]; // The values of the variables in the solution read last, null until a solution is read [nVariables]
+
+    /**
+     * Builds the view of the given variables.
+     * @param pp an instance of the production planning problem
+     * @param x the x variables, with a single level if they do not depend on the level [nProducts][nFacilities][nXLevels]
+     * @param y the y variables [nProducts][nFacilities][maxNProductionLevels]
+     * @param phi the phi variables [nProducts]
+     */
+    public MasterSolutionView(ProductionPlanningProblem pp, IloNumVar x[][][], IloNumVar y[][][], IloNumVar phi[]) {
+        int nVariables = pp.getnProducts();
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                nVariables = nVariables + pp.getnProductionLevels(f,p) + Math.min(x[p-1][f-1].length, pp.getnProductionLevels(f,p));
+            }
+        }
+        this.variables = new IloNumVar[nVariables];
+        this.xIndex = new int[pp.getnProducts()][pp.getnFacilities()][];
+        this.yIndex = new int[pp.getnProducts()][pp.getnFacilities()][];
+        this.phiIndex = new int[pp.getnProducts()];
+
+        // The variables of a product are contiguous
+        int position = 0;
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                int nXLevels = Math.min(x[p-1][f-1].length, pp.getnProductionLevels(f,p));
+                xIndex[p-1][f-1] = new int[nXLevels];
+                for(int l = 1; l <= nXLevels; l++){
+                    xIndex[p-1][f-1][l-1] = position;
+                    variables[position++] = x[p-1][f-1][l-1];
+                }
+                yIndex[p-1][f-1] = new int[pp.getnProductionLevels(f,p)];
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    yIndex[p-1][f-1][l-1] = position;
+                    variables[position++] = y[p-1][f-1][l-1];
+                }
+            }
+            phiIndex[p-1] = position;
+            variables[position++] = phi[p-1];
+        }
+    }
+
+    private MasterSolutionView(MasterSolutionView view) {
+        this.variables = view.variables;
+        this.xIndex = view.xIndex;
+        this.yIndex = view.yIndex;
+        this.phiIndex = view.phiIndex;
+    }
+
+    /**
+     * Creates a view of the same variables with its own values.
+     * @return
+     */
+    public MasterSolutionView copy(){
+        return new MasterSolutionView(this);
+    }
+
+    /**
+     * Provides the values of several variables in the solution being read.
+     */
+    public interface ValueSource {
+        double[] getValues(IloNumVar vars[]) throws IloException;
+    }
+
+    /**
+     * Reads the values of all variables with a single call to the source, and keeps the array it returns.
+     * The getValues methods of CPLEX, including the overloads with an offset, always return a new array,
+     * so each read allocates the values once; only the variables, the indices and the quantities derived from the view are reused.
+     * @param source
+     * @throws IloException
+     */
+    public void read(ValueSource source) throws IloException {
+        this.values = source.getValues(variables);
+    }
+
+    public IloNumVar[] getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the values of all variables in the solution read last, in the order of getVariables().
+     * @return
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    public int getnVariables() {
+        return variables.length;
+    }
+
+    public int getXIndex(int product, int facility, int level) {
+        return xIndex[product-1][facility-1][level-1];
+    }
+
+    public int getYIndex(int product, int facility, int level) {
+        return yIndex[product-1][facility-1][level-1];
+    }
+
+    public int getPhiIndex(int product) {
+        return phiIndex[product-1];
+    }
+
+    public double getX(int product, int facility) {
+        return values[xIndex[product-1][facility-1][0]];
+    }
+
+    public double getX(int product, int facility, int level) {
+        return values[xIndex[product-1][facility-1][level-1]];
+    }
+
+    public double getY(int product, int facility, int level) {
+        return values[yIndex[product-1][facility-1][level-1]];
+    }
+
+    public double getPhi(int product) {
+        return values[phiIndex[product-1]];
+    }
+}
@@ -0,0 +1,54 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.concert.IloModeler;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
+
+/**
+ * Builds linear constraints from primitive buffers of coefficients and variables.
+ * The terms are accumulated in arrays reused across cuts, and each constraint is created
+ * with a single call to scalProd rather than one addTerm call per term.
+ * A builder is not thread-safe: each thread needs its own builder.
+ */
+public class OptimalityCutBuilder {
+    private final IloModeler model;
+    private final double coefficients[]; // [maxNTerms]
+    private final IloNumVar variables[]; // [maxNTerms]
+    private int nTerms = 0;
+
+    /**
+     * Constructs a builder.
+     * @param model the model creating the constraints
+     * @param maxNTerms the highest number of terms of a constraint
+     */
+    public OptimalityCutBuilder(IloModeler model, int maxNTerms) {
+        this.model = model;
+        this.coefficients = new double[maxNTerms];
+        this.variables = new IloNumVar[maxNTerms];
+    }
+
+    /**
+     * Removes all terms before a new constraint is built.
+     */
+    public void clear(){
+        nTerms = 0;
+    }
+
+    public void addTerm(double coefficient, IloNumVar variable){
+        coefficients[nTerms] = coefficient;
+        variables[nTerms] = variable;
+        nTerms++;
+    }
+
+    /**
+     * Creates the constraint sum_i coefficient_i * variable_i <= rhs from the terms added since the last clear.
+     * The constraint is not added to the model.
+     * @param rhs the right-hand side
+     * @return
+     * @throws IloException
+     */
+    public IloRange buildLe(double rhs) throws IloException {
+        return model.le(model.scalProd(coefficients, variables, 0, nTerms), rhs);
+    }
+}
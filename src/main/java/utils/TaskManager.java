@@ -1,11 +1,14 @@
 package utils;
 
 import ilog.concert.IloException;
+import models.FullModel;
 import models.MasterProblemV1;
-import models.OptimalitySubproblemV1;
+import models.RecourseEvaluation;
+import models.RecourseEvaluator;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import problems.ProductionPlanningProblemWithSalvageRevenue;
+import problems.ScenarioReduction;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -33,36 +36,163 @@ public class TaskManager {
             }
         }
         // Then we compute the second-stage cost
+        RecourseEvaluator evaluators[] = RecourseEvaluator.forAllProducts(pp);
+        RecourseEvaluation evaluation = new RecourseEvaluation(pp.getnFacilities());
         for (int p = 1; p <= pp.getnProducts(); p++) {
             // First, we identify the distribution enforced by the EV solution on the product
-            int nDistributions = 0;
-            for (int d = 1; d <= pp.getnDistributions(p); d++) {
-                boolean enforced = true;
+            int d = pp.getEnforcedDistribution(p, Y[p-1]);
+            if (d == 0) {
+                throw new IllegalArgumentException("The EV problem does not enforce any distribution.");
+            }
+            eev = eev + evaluators[p-1].evaluate(d, X[p-1], evaluation);
+        }
+        System.out.println("EEV = "+eev);
+        saveEEVResults(conf, pp, eev,evp.getSolutionTime(),evp.getGap());
+
+    }
+
+    /**
+     * Reports the error on the objective function caused by storing the yields and the demands in single precision.
+     * The second-stage profit of a scenario is leftover * production + (price - leftover) * min(production, demand), so it
+     * changes by at most max(|price|,|leftover|) per unit of production and |price - leftover| per unit of demand.
+     * Since production is at most the highest level (or the capacity) at each facility, the error of a product is bounded
+     * by the highest expectation, over its distributions, of the resulting changes, and the error of the objective by
+     * the sum of these bounds over the products. The first-stage costs are not affected.
+     * The errors are also measured at the highest quantities and at the middle of the levels of each distribution.
+     * @param pp the instance stored in double precision
+     * @param sp the same instance stored in single precision
+     * @param conf
+     */
+    public static void computeSinglePrecisionError(ProductionPlanningProblemWithSalvageRevenue pp, ProductionPlanningProblemWithSalvageRevenue sp, Configuration conf){
+        RecourseEvaluator evaluators[] = RecourseEvaluator.forAllProducts(pp);
+        RecourseEvaluator spEvaluators[] = RecourseEvaluator.forAllProducts(sp);
+        RecourseEvaluation evaluation = new RecourseEvaluation(pp.getnFacilities());
+        double highestQuantities[] = new double[pp.getnFacilities()];
+        double middleQuantities[] = new double[pp.getnFacilities()];
+        double errorBound = 0;
+        double observedError = 0;
+        for(int p = 1; p <= pp.getnProducts(); p++){
+            double productionSlope = Math.max(Math.abs(pp.getSalesPrice(p)), Math.abs(pp.getLeftoverCosts(p)));
+            double demandSlope = Math.abs(pp.getSalesPrice(p) - pp.getLeftoverCosts(p));
+            double expectedDemandError = 0;
+            for(int sd = 1; sd <= pp.getnDemandScenarios(p); sd++){
+                expectedDemandError = expectedDemandError + pp.getDemandScenarioProbability(p,sd)
+                        * Math.abs(pp.getDemandScenarioRealization(p,sd) - sp.getDemandScenarioRealization(p,sd));
+            }
+            double totalDemandProbability = 0;
+            for(int sd = 1; sd <= pp.getnDemandScenarios(p); sd++){
+                totalDemandProbability = totalDemandProbability + pp.getDemandScenarioProbability(p,sd);
+            }
+            double productErrorBound = 0;
+            double productObservedError = 0;
+            for(int d = 1; d <= pp.getnDistributions(p); d++){
                 for(int f = 1; f <= pp.getnFacilities(); f++){
-                    int level = pp.getDistributionProductionLevels(p,d,f);
-                    if(Y[p-1][f-1][level] < 0.5){
-                        enforced = false;
-                        break;
-                    }
+                    int level = pp.getDistributionProductionLevels(p,d,f) + 1;
+                    highestQuantities[f-1] = Math.min(pp.getProductionLevelUpperBound(f,p,level), pp.getTotalCapacity(f));
+                    middleQuantities[f-1] = (pp.getProductionLevelLowerBound(f,p,level) + highestQuantities[f-1]) / 2;
                 }
-                if(enforced) {
-                    nDistributions++;
-                    for (int s = 1; s <= pp.getnScenarios(p, d); s++) {
-                        OptimalitySubproblemV1 optimalitySubproblem = new OptimalitySubproblemV1(p, d, s, X, pp);
-                        double objectiveValue = optimalitySubproblem.solve();
-                        eev = eev + (pp.getProbability(p,d,s) * objectiveValue);
+                double distributionErrorBound = 0;
+                for(int sy = 1; sy <= pp.getnYieldScenarios(p,d); sy++){
+                    double productionError = 0;
+                    for(int f = 1; f <= pp.getnFacilities(); f++){
+                        productionError = productionError + highestQuantities[f-1]
+                                * Math.abs(pp.getYieldScenarioRealization(p,d,f,sy) - sp.getYieldScenarioRealization(p,d,f,sy));
                     }
+                    distributionErrorBound = distributionErrorBound + pp.getYieldScenarioProbability(p,d,sy)
+                            * (totalDemandProbability * productionSlope * productionError + demandSlope * expectedDemandError);
                 }
+                productErrorBound = Math.max(productErrorBound, distributionErrorBound);
+                productObservedError = Math.max(productObservedError, Math.abs(evaluators[p-1].evaluate(d, highestQuantities, evaluation) - spEvaluators[p-1].evaluate(d, highestQuantities, evaluation)));
+                productObservedError = Math.max(productObservedError, Math.abs(evaluators[p-1].evaluate(d, middleQuantities, evaluation) - spEvaluators[p-1].evaluate(d, middleQuantities, evaluation)));
             }
-            if (nDistributions != 1) {
-                throw new IllegalArgumentException("The EV problem enforces more than one distributions.");
+            System.out.println("Product "+p+" error bound "+productErrorBound+" observed error "+productObservedError);
+            errorBound = errorBound + productErrorBound;
+            observedError = observedError + productObservedError;
+        }
+        System.out.println("Single precision objective error bound = "+errorBound+" observed = "+observedError);
+        long scenarioBytes = pp.getScenarioStore().getScenarioBytes();
+        long spScenarioBytes = sp.getScenarioStore().getScenarioBytes();
+        System.out.println("Scenario memory "+scenarioBytes+" bytes in double precision, "+spScenarioBytes+" bytes in single precision");
+        saveSinglePrecisionErrorResults(conf, pp, errorBound, observedError, scenarioBytes, spScenarioBytes);
+    }
+
+    public static void saveSinglePrecisionErrorResults(Configuration config, ProductionPlanningProblemWithSalvageRevenue pp, double errorBound, double observedError, long scenarioBytes, long spScenarioBytes){
+        File f = new File(config.getResultsFile());
+        boolean file_exists = f.exists();
+        try (FileWriter fw = new FileWriter(f,true); CSVPrinter printer = new CSVPrinter(fw, CSVFormat.DEFAULT)) {
+            if(!file_exists){
+                printer.printRecord("version","n_products","n_facilities","max_n_distributions","max_n_scenarios","experiment","error_bound","observed_error","scenario_bytes","sp_scenario_bytes","instance_file","experiment_time");
             }
+            printer.printRecord(config.getVersion(),pp.getnProducts(),pp.getnFacilities(),pp.getMaxNDistributions(),pp.getMaxNScenarios(), config.getTest(),errorBound,observedError,scenarioBytes,spScenarioBytes,config.getInstanceFile(),config.getTestTime());
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        System.out.println("EEV = "+eev);
-        saveEEVResults(conf, pp, eev,evp.getSolutionTime(),evp.getGap());
 
     }
 
+    /**
+     * Saves the numbers of scenarios and the distances of the reduction of each product and distribution.
+     * @param config
+     * @param pp the problem before the reduction
+     * @param reduction
+     */
+    public static void saveReductionResults(Configuration config, ProductionPlanningProblemWithSalvageRevenue pp, ScenarioReduction reduction){
+        File directory = new File("reductions");
+        if(!directory.exists()){
+            directory.mkdir();
+        }
+        File f = new File(directory.getAbsolutePath()+File.separator+"red_"+config.getVersion()+"_"+pp.getnProducts()+"_"+pp.getnFacilities()+"_"+pp.getMaxNDistributions()+"_"+pp.getMaxNScenarios()+"_"+config.getTestTime()+".csv");
+        try (FileWriter fw = new FileWriter(f,true); CSVPrinter printer = new CSVPrinter(fw, CSVFormat.DEFAULT)) {
+            printer.printRecord("product","distribution","n_yield_scenarios","n_reduced_yield_scenarios","n_demand_scenarios","n_reduced_demand_scenarios",
+                    "yield_distance","demand_distance","distance","max_n_scenarios","tolerance","instance_file");
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                for(int d = 1; d <= pp.getnDistributions(p); d++){
+                    printer.printRecord(p,d,pp.getnYieldScenarios(p,d),reduction.getnReducedYieldScenarios(p,d),pp.getnDemandScenarios(p),reduction.getnReducedDemandScenarios(p),
+                            reduction.getYieldDistance(p,d),reduction.getDemandDistance(p),reduction.getDistance(p,d),config.getReductionSize(),config.getReductionTolerance(),config.getInstanceFile());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * Compares the LP relaxation bounds of the full model with the big-M linearization and with the disaggregated distributions.
+     * The two models are built and solved one after the other, and each is released before the next is built.
+     * @param pp an instance of the production planning problem
+     * @param conf
+     * @throws IloException
+     */
+    public static void compareRootBounds(ProductionPlanningProblemWithSalvageRevenue pp, Configuration conf) throws IloException {
+        double bigMBound;
+        FullModel bigM = new FullModel(pp, conf.useVariableNames(), false);
+        try {
+            bigMBound = bigM.solveRelaxation(conf);
+        } finally {
+            bigM.end();
+        }
+        double tightBound;
+        FullModel tight = new FullModel(pp, conf.useVariableNames(), true);
+        try {
+            tightBound = tight.solveRelaxation(conf);
+        } finally {
+            tight.end();
+        }
+        System.out.println("LP relaxation bound big-M "+bigMBound+" disaggregated "+tightBound+" improvement "+(bigMBound - tightBound)/Math.abs(bigMBound)*100+"%");
+
+        File f = new File(conf.getResultsFile());
+        boolean file_exists = f.exists();
+        try (FileWriter fw = new FileWriter(f,true); CSVPrinter printer = new CSVPrinter(fw, CSVFormat.DEFAULT)) {
+            if(!file_exists){
+                printer.printRecord("version","n_products","n_facilities","max_n_distributions","max_n_scenarios","experiment","big_m_lp_bound","disaggregated_lp_bound","instance_file","experiment_time");
+            }
+            printer.printRecord(conf.getVersion(),pp.getnProducts(),pp.getnFacilities(),pp.getMaxNDistributions(),pp.getMaxNScenarios(),conf.getTest(),bigMBound,tightBound,conf.getInstanceFile(),conf.getTestTime());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     public static void saveEEVResults(Configuration config, ProductionPlanningProblemWithSalvageRevenue pp,double eev, double evSolutionTime,double evGap){
         File f = new File(config.getResultsFile());
         boolean file_exists = f.exists();
@@ -14,20 +14,29 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
 
 public abstract class Testable<T extends ProductionPlanningProblem> {
     protected final T pp;
     protected String experiment_name;
     protected long start;
     protected long end;
-    protected int nCuts = 0;
-    protected int nCallbackCalls = 0;
+    protected final AtomicInteger nCuts = new AtomicInteger(); // Updated concurrently by the callbacks
+    protected final AtomicInteger nCallbackCalls = new AtomicInteger();
     protected double bestInteger = Double.NEGATIVE_INFINITY;
     protected double bestBound = Double.POSITIVE_INFINITY;
     protected double gap = Double.POSITIVE_INFINITY;
-    protected double totalCallbackTime = 0;
-    protected double rootNodeRelaxationTime = -1;
-    protected double rootNodeLPbound = Double.POSITIVE_INFINITY;
+    protected final DoubleAdder totalCallbackTime = new DoubleAdder();
+    protected volatile double rootNodeRelaxationTime = -1;
+    protected volatile double rootNodeLPbound = Double.POSITIVE_INFINITY;
+    protected int nRootRounds = 0; // The number of rounds of the cutting plane loop performed before branching
+    protected int nRootCuts = 0; // The number of cuts added by the loop
+    protected double rootStabilizationFactor = 0;
+    protected double rootLoopTime = 0;
+    protected double rootLoopBound = Double.POSITIVE_INFINITY;
+    protected long nCacheHits = 0; // The number of evaluations of the recourse found in the cache
+    protected long nCacheMisses = 0;
     protected int nNodesExplored = -1;
 
     public Testable(T pp, String experiment_name) {
@@ -52,7 +61,19 @@ public abstract class Testable<T extends ProductionPlanningProblem> {
     }
 
     public double getTotalCallbackTime(){
-        return totalCallbackTime;
+        return totalCallbackTime.sum();
+    }
+
+    /**
+     * Stores the time and the bound of the root node relaxation the first time it is called.
+     * It can be called by several threads.
+     * @param lpBound the bound of the root node relaxation
+     */
+    protected synchronized void storeRootNodeRelaxation(double lpBound){
+        if(rootNodeRelaxationTime < 0){
+            rootNodeRelaxationTime = (System.nanoTime() - start)/1e9;
+            rootNodeLPbound = lpBound;
+        }
     }
 
     public double getRootNodeRelaxationTime() {
@@ -74,9 +95,10 @@ public abstract class Testable<T extends ProductionPlanningProblem> {
             if(!file_exists){
                 printer.printRecord("version","n_products","n_facilities","max_n_distributions","max_n_scenarios","experiment",
                         "gap","best_integer", "best_bound", "solution_time","root_lp_time","root_lp_bound",
-                        "n_nodes","n_cuts","callback_time","n_callback_calls","instance_file","experiment_time");
+                        "n_nodes","n_cuts","callback_time","n_callback_calls","root_rounds","root_cuts","root_stabilization",
+                        "root_loop_time","root_loop_bound","cache_hits","cache_misses","instance_file","experiment_time");
             }
-            printer.printRecord(config.getVersion(),pp.getnProducts(),pp.getnFacilities(),pp.getMaxNDistributions(),pp.getMaxNScenarios(),experiment_name,gap,bestInteger, bestBound, getSolutionTime(),getRootNodeRelaxationTime(),getRootNodeLPbound(),getnNodesExplored(),nCuts, totalCallbackTime,nCallbackCalls,config.getInstanceFile(),config.getTestTime());
+            printer.printRecord(config.getVersion(),pp.getnProducts(),pp.getnFacilities(),pp.getMaxNDistributions(),pp.getMaxNScenarios(),experiment_name,gap,bestInteger, bestBound, getSolutionTime(),getRootNodeRelaxationTime(),getRootNodeLPbound(),getnNodesExplored(),nCuts.get(), getTotalCallbackTime(),nCallbackCalls.get(),nRootRounds,nRootCuts,rootStabilizationFactor,rootLoopTime,rootLoopBound,nCacheHits,nCacheMisses,config.getInstanceFile(),config.getTestTime());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -99,13 +121,15 @@ public abstract class Testable<T extends ProductionPlanningProblem> {
                     "BEST_GAP double, BEST_INTEGER double, " +
                     "BEST_BOUND double, TIME double, ROOT_LP_TIME double, ROOT_LP_BOUND double, " +
                     "NODES_EXPL integer, OCUTS integer, CALLBACKTIME double, " +
-                    "NCALLBACKCALLS integer, INSTANCE_FILE string, TIMESTAMP string)");
+                    "NCALLBACKCALLS integer, ROOT_ROUNDS integer, ROOT_CUTS integer, ROOT_STABILIZATION double, " +
+                    "ROOT_LOOP_TIME double, ROOT_LOOP_BOUND double, CACHE_HITS integer, CACHE_MISSES integer, INSTANCE_FILE string, TIMESTAMP string)");
 
 
             statement.executeUpdate("insert into results values('"
                     +config.getVersion()+"','"+pp.getnProducts()+"','"+pp.getnFacilities()+"','"+pp.getMaxNDistributions()+"','"+pp.getMaxNScenarios()+"','"+experiment_name+"','"+gap
-                    +"','"+ bestInteger+"','"+bestBound+"','"+getSolutionTime()+"','"+getRootNodeRelaxationTime()+"','"+getRootNodeLPbound()+"','"+getnNodesExplored()+"','"+nCuts
-                    +"','"+totalCallbackTime+"','"+nCallbackCalls+"','"+config.getInstanceFile()+"','"+config.getTestTime()+"')");
+                    +"','"+ bestInteger+"','"+bestBound+"','"+getSolutionTime()+"','"+getRootNodeRelaxationTime()+"','"+getRootNodeLPbound()+"','"+getnNodesExplored()+"','"+nCuts.get()
+                    +"','"+getTotalCallbackTime()+"','"+nCallbackCalls.get()+"','"+nRootRounds+"','"+nRootCuts+"','"+rootStabilizationFactor
+                    +"','"+rootLoopTime+"','"+rootLoopBound+"','"+nCacheHits+"','"+nCacheMisses+"','"+config.getInstanceFile()+"','"+config.getTestTime()+"')");
 
             System.out.println("Stored results.");
             statement.close();
@@ -163,6 +187,26 @@ public abstract class Testable<T extends ProductionPlanningProblem> {
     public abstract int[][][] getFirstStageYSolution() throws IloException;
     public abstract double[][] getSecondStageSales() throws IloException;
     public abstract double[][] getSecondStageOversupply() throws IloException;
+    /**
+     * Appends a progress record to the log file.
+     * If the log file does not exist, it first prints some information about the problem.
+     * It can be called by several threads.
+     */
+    protected synchronized void printProgress(File logFile, double elapsedTime, double incumbent, double bestBound, double bestGap, long nNodes){
+        boolean logFileExists = logFile.exists();
+        try (FileWriter fw = new FileWriter(logFile, true); CSVPrinter printer = new CSVPrinter(fw, CSVFormat.DEFAULT)) {
+            // If the logfile is just created we print some information about the problem.
+            if (!logFileExists) {
+                printer.printRecord("n_products", "n_facilities", "max_n_distributions", "max_n_scenarios", "experiment");
+                printer.printRecord(pp.getnProducts(), pp.getnFacilities(), pp.getMaxNDistributions(), pp.getMaxNScenarios(), experiment_name);
+                printer.printRecord("time", "best_integer", "best_bound", "best_gap", "n_nodes_explored", "n_cuts");
+            }
+            // We log progress information
+            printer.printRecord(elapsedTime, incumbent, bestBound, bestGap, nNodes, nCuts.get());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
     protected class ProgressCallback extends IloCplex.MIPInfoCallback{
         private final File logFile;
         private double lastLogTime = 0;
@@ -175,37 +219,19 @@ public abstract class Testable<T extends ProductionPlanningProblem> {
 
         @Override
         protected void main() throws IloException {
-            // Checks if the logfile exists
             if (this.logFrequency > 0) {
-                boolean logFileExists = logFile.exists();
-                try (FileWriter fw = new FileWriter(logFile, true); CSVPrinter printer = new CSVPrinter(fw, CSVFormat.DEFAULT)) {
-                    // If the logfile is just created we print some information about the problem.
-                    if (!logFileExists) {
-                        printer.printRecord("n_products", "n_facilities", "max_n_distributions", "max_n_scenarios", "experiment");
-                        printer.printRecord(pp.getnProducts(), pp.getnFacilities(), pp.getMaxNDistributions(), pp.getMaxNScenarios(), experiment_name);
-                        printer.printRecord("time", "best_integer", "best_bound", "best_gap", "n_nodes_explored", "n_cuts");
-                    }
-                    // We log progress information
-
-                    // Calculates elapsed time
-                    double elapsedTime = (System.nanoTime() - start) / 1e9;
-
-                    // We log at intervals of 100 seconds
-                    if ((elapsedTime - lastLogTime) > logFrequency) {
-                        lastLogTime = elapsedTime;
-                        double logIncumbent = Double.NEGATIVE_INFINITY;
-                        if (hasIncumbent()) {
-                            logIncumbent = getIncumbentObjValue();
-                        }
-                        double logBestBound = getBestObjValue();
-                        double logBestGap = getMIPRelativeGap();
-                        int logNNodes = getNnodes();
-                        printer.printRecord(elapsedTime, logIncumbent, logBestBound, logBestGap, logNNodes, nCuts);
+                // Calculates elapsed time
+                double elapsedTime = (System.nanoTime() - start) / 1e9;
+
+                // We log at intervals of logFrequency seconds
+                if ((elapsedTime - lastLogTime) > logFrequency) {
+                    lastLogTime = elapsedTime;
+                    double logIncumbent = Double.NEGATIVE_INFINITY;
+                    if (hasIncumbent()) {
+                        logIncumbent = getIncumbentObjValue();
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    printProgress(logFile, elapsedTime, logIncumbent, getBestObjValue(), getMIPRelativeGap(), getNnodes());
                 }
-
             }
         }
     }
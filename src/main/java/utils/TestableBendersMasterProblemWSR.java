@@ -0,0 +1,793 @@
+package utils;
+
+import ilog.concert.IloConversion;
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+import models.RecourseCache;
+import models.RecourseEvaluation;
+import models.RecourseEvaluator;
+import problems.Cover;
+import problems.ProductionPlanningProblemWithSalvageRevenue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Contains the elements shared by all master problems of the Benders decomposition,
+ * that is, the model, the y and phi variables and the generation of the optimality cuts.
+ * The x variables are specified by the subclasses.
+ */
+public abstract class TestableBendersMasterProblemWSR extends Testable<ProductionPlanningProblemWithSalvageRevenue> {
+    protected final IloCplex model;
+    protected final IloIntVar y[][][];
+    protected final IloNumVar phi[];
+    protected final RecourseEvaluator evaluators[]; // Evaluates the second-stage problem of each product [nProducts]
+    private ForkJoinPool cutGenerationPool; // Evaluates the products in parallel during cut generation (null if sequential)
+    private MasterSolutionView solutionLayout; // The flat view of the variables shared by all separators (created on first use)
+    protected boolean paretoOptimalCuts = false; // Whether the cuts are chosen to be Pareto-optimal with respect to a core point
+    protected RecourseCache recourseCaches[]; // The cache of the evaluations of each product, null if disabled [nProducts]
+    protected final AtomicInteger nCoverCuts = new AtomicInteger(); // The number of lifted cover inequalities separated
+
+    public TestableBendersMasterProblemWSR(ProductionPlanningProblemWithSalvageRevenue pp, String experimentName) throws IloException {
+        super(pp,experimentName);
+
+        model = new IloCplex();
+
+        // Creates the y decision variables
+        this.y = new IloIntVar[pp.getnProducts()][pp.getnFacilities()][pp.getMaxnProductionLevels()];
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    y[p-1][f-1][l-1] = model.boolVar("y_"+p+"_"+f+"_"+l);
+                }
+            }
+        }
+        // Creates the phi decision variables
+        this.phi = new IloNumVar[pp.getnProducts()];
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            this.phi[p-1] = model.numVar(Double.NEGATIVE_INFINITY,Double.POSITIVE_INFINITY,"phi_"+p);
+        }
+        // Creates the evaluators of the second-stage problems
+        this.evaluators = RecourseEvaluator.forAllProducts(pp);
+    }
+
+    public abstract void configure(Configuration config) throws IloException;
+
+    /**
+     * Sets the number of threads and registers the callbacks generating the optimality cuts.
+     * The generic callback can be used with any number of threads, whereas the legacy callbacks
+     * make CPLEX use a single thread unless the number of threads is set explicitly.
+     * @param config
+     * @throws IloException
+     */
+    protected void useCallbacks(Configuration config) throws IloException {
+        if(config.getThreads() > 0){
+            model.setParam(IloCplex.Param.Threads, config.getThreads());
+        }
+        if(config.useGenericCallback()){
+            long contextMask = IloCplex.Callback.Context.Id.Candidate
+                    | IloCplex.Callback.Context.Id.GlobalProgress
+                    | IloCplex.Callback.Context.Id.ThreadUp
+                    | IloCplex.Callback.Context.Id.ThreadDown;
+            // As with the legacy callbacks, the relaxations are only separated if user cuts are enabled
+            if(config.getUserCutRounds() > 0 || config.separateLiftedCovers()){
+                contextMask = contextMask | IloCplex.Callback.Context.Id.Relaxation;
+            }
+            model.use(new GenericCutsCallback(config), contextMask);
+        }else{
+            model.use(new CutsCallback());
+            if(config.getUserCutRounds() > 0 || config.separateLiftedCovers()){
+                model.use(new UserCutsCallback(config));
+            }
+            model.use(new ProgressCallback(config));
+        }
+    }
+
+    /**
+     * Creates a separator of optimality cuts.
+     * Each thread generating cuts needs its own separator.
+     * @return
+     */
+    protected abstract OptimalityCutSeparator createSeparator();
+
+    public boolean solve(Configuration config) throws IloException {
+        paretoOptimalCuts = config.useParetoOptimalCuts();
+        if(config.getRecourseCacheSize() > 0){
+            recourseCaches = RecourseCache.forAllProducts(pp.getnProducts(), config.getRecourseCacheSize(), config.getRecourseCacheQuantum());
+        }
+        configure(config);
+        if(config.getCutGenerationThreads() > 1){
+            cutGenerationPool = new ForkJoinPool(config.getCutGenerationThreads());
+        }
+
+        start = System.nanoTime();
+        boolean hasSolution;
+        try {
+            if(config.getRootRounds() > 0){
+                solveRootRelaxation(config);
+                // The time spent in the root loop counts towards the time limit
+                double remainingTime = config.getTimeLimit() - (System.nanoTime() - start)/1e9;
+                model.setParam(IloCplex.Param.TimeLimit, Math.max(remainingTime, 1));
+            }
+            hasSolution = model.solve();
+        } finally {
+            if(cutGenerationPool != null){
+                cutGenerationPool.shutdown();
+                cutGenerationPool = null;
+            }
+        }
+        end = System.nanoTime();
+        if(recourseCaches != null){
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                nCacheHits = nCacheHits + recourseCaches[p-1].getnHits();
+                nCacheMisses = nCacheMisses + recourseCaches[p-1].getnMisses();
+            }
+            System.out.println("Recourse cache hits "+nCacheHits+" misses "+nCacheMisses);
+        }
+        if(config.separateLiftedCovers()){
+            System.out.println("Lifted cover inequalities added "+nCoverCuts.get());
+        }
+        if(hasSolution) {
+            gap = model.getMIPRelativeGap();
+            bestInteger = model.getObjValue();
+        }
+        bestBound = model.getBestObjValue();
+        nNodesExplored = model.getNnodes();
+        System.out.println("Status "+model.getStatus().toString());
+        return hasSolution;
+    }
+
+    /**
+     * Strengthens the master problem with optimality cuts before branching (Kelley's cutting plane method).
+     * The LP relaxation of the master problem is solved repeatedly and the optimality cuts violated by its solution
+     * are added as static constraints, until no cut is violated, the bound stalls,
+     * or the number of rounds or the time allowed are exceeded.
+     * The cuts are separated at a convex combination of the LP solution and a core point (in-out stabilization),
+     *    alpha * core + (1-alpha) * LP solution
+     * and at the LP solution itself when no cut is violated at the combination.
+     * The core point is initialized with the first LP solution and then moved halfway towards each new LP solution.
+     * @param config
+     * @throws IloException
+     */
+    protected void solveRootRelaxation(Configuration config) throws IloException {
+        long loopStart = System.nanoTime();
+        rootStabilizationFactor = config.getRootStabilizationFactor();
+
+        // Relaxes the integrality of the y variables
+        List<IloNumVar> yVariables = new ArrayList<>();
+        for (int p = 1; p <= pp.getnProducts(); p++){
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                    yVariables.add(y[p-1][f-1][l-1]);
+                }
+            }
+        }
+        IloConversion relaxation = model.conversion(yVariables.toArray(new IloNumVar[0]), IloNumVarType.Float);
+        model.add(relaxation);
+
+        OptimalityCutSeparator separator = createSeparator();
+        double core[] = null;
+        double stabilizedPoint[] = null;
+        double lastBound = Double.POSITIVE_INFINITY;
+        int nStalledRounds = 0;
+        try {
+            while (nRootRounds < config.getRootRounds() && (System.nanoTime() - loopStart)/1e9 < config.getRootTimeLimit()) {
+                if (!model.solve()) {
+                    System.out.println("Root loop: LP relaxation not solved, status " + model.getStatus().toString());
+                    break;
+                }
+                nRootRounds++;
+                double bound = model.getObjValue();
+                rootLoopBound = bound;
+
+                // Stops if the bound did not improve significantly in the last rounds
+                if (lastBound - bound < 1e-6 * Math.max(1, Math.abs(bound))) {
+                    nStalledRounds++;
+                    if (nStalledRounds >= 5) {
+                        break;
+                    }
+                } else {
+                    nStalledRounds = 0;
+                }
+                lastBound = bound;
+
+                // Separates at the stabilized point
+                double alpha = rootStabilizationFactor;
+                double lpPoint[] = model.getValues(separator.getView().getVariables());
+                if (core == null) {
+                    core = lpPoint.clone();
+                    stabilizedPoint = new double[lpPoint.length];
+                }
+                for (int i = 0; i < lpPoint.length; i++) {
+                    stabilizedPoint[i] = alpha * core[i] + (1 - alpha) * lpPoint[i];
+                    core[i] = 0.5 * core[i] + 0.5 * lpPoint[i];
+                }
+                final double point[] = stabilizedPoint;
+                separator.readPoint(vars -> point);
+                int nViolated = separator.separateFractional(config.getUserCutMinViolation());
+                if (nViolated == 0 && alpha > 0) {
+                    // Separates at the LP solution
+                    separator.readPoint(vars -> lpPoint);
+                    nViolated = separator.separateFractional(config.getUserCutMinViolation());
+                }
+                if (nViolated == 0) {
+                    break;
+                }
+                for (int p = 1; p <= pp.getnProducts(); p++) {
+                    if (separator.isViolated(p)) {
+                        model.add(separator.getCut(p));
+                        nRootCuts++;
+                    }
+                }
+                System.out.println("Root loop round " + nRootRounds + " bound " + bound + " # cuts " + nRootCuts);
+            }
+        } finally {
+            // Restores the integrality of the y variables
+            model.remove(relaxation);
+            rootLoopTime = (System.nanoTime() - loopStart)/1e9;
+        }
+        System.out.println("Root loop: " + nRootRounds + " rounds, " + nRootCuts + " cuts, bound " + rootLoopBound + ", time " + rootLoopTime);
+    }
+
+    /**
+     * Executes the task for every product, in parallel if a cut generation pool is available.
+     * @param task the task, which receives the product as argument
+     */
+    protected void forEachProduct(IntConsumer task){
+        if(cutGenerationPool == null){
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                task.accept(p);
+            }
+        }else{
+            cutGenerationPool.submit(() -> IntStream.rangeClosed(1, pp.getnProducts()).parallel().forEach(task)).join();
+        }
+    }
+
+    /**
+     * Adds to the model the minimal cover inequalities of the capacity of each facility:
+     * the levels of a cover cannot all be chosen.
+     * @param maxCovers the largest number of covers added for each facility
+     * @throws IloException
+     */
+    public void addMinimalCoversInequalities(int maxCovers) throws IloException {
+        Cover covers[][] = pp.getMinimalCovers(maxCovers);
+        for(int f = 1; f <= pp.getnFacilities(); f++){
+            for(Cover c : covers[f-1]){
+                IloLinearNumExpr lhs = model.linearNumExpr();
+                for(int p : c.getProducts()){
+                    lhs.addTerm(1, y[p-1][f-1][c.getLevel(p)-1]);
+                }
+                model.addLe(lhs, c.getProducts().size()-1);
+            }
+            System.out.println("Added "+covers[f-1].length+" minimal covers for facility "+f);
+        }
+        super.experiment_name = super.experiment_name+"+MCI";
+    }
+
+    /**
+     * Adds to the model the extended cover inequalities of the capacity of each facility.
+     * A minimal cover is extended with the levels of its products with a higher lower bound,
+     * and with the levels of the other products whose lower bound is at least the highest lower bound of the cover.
+     * @param maxCovers the largest number of covers extended for each facility
+     * @throws IloException
+     */
+    public void addExtendedCoverInequalities(int maxCovers) throws IloException {
+        Cover covers[][] = pp.getMinimalCovers(maxCovers);
+        for(int f = 1; f <= pp.getnFacilities(); f++){
+            for(Cover c : covers[f-1]){
+                double highestWeight = 0;
+                for(int p : c.getProducts()){
+                    highestWeight = Math.max(highestWeight, pp.getProductionLevelLowerBound(f,p,c.getLevel(p)));
+                }
+                IloLinearNumExpr lhs = model.linearNumExpr();
+                for(int p = 1; p <= pp.getnProducts(); p++){
+                    double smallestWeight = c.getProducts().contains(p) ? pp.getProductionLevelLowerBound(f,p,c.getLevel(p)) : highestWeight;
+                    for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                        if(pp.getProductionLevelLowerBound(f,p,l) >= smallestWeight){
+                            lhs.addTerm(1, y[p-1][f-1][l-1]);
+                        }
+                    }
+                }
+                model.addLe(lhs, c.getProducts().size()-1);
+            }
+            System.out.println("Added "+covers[f-1].length+" extended covers for facility "+f);
+        }
+        super.experiment_name = super.experiment_name+"+ECI";
+    }
+
+    /**
+     * Creates a separator of the lifted cover inequalities of the capacities.
+     * Each thread generating cuts needs its own separator.
+     * @return
+     */
+    protected LiftedCoverSeparator createCoverSeparator(){
+        return new LiftedCoverSeparator(pp, new OptimalityCutBuilder(model, pp.getnProducts() * pp.getMaxnProductionLevels()));
+    }
+
+    /**
+     * Returns the x variables indexed by product, facility and level.
+     * If the x variables do not depend on the level, the array contains a single level.
+     * @return [nProducts][nFacilities][nXLevels]
+     */
+    protected abstract IloNumVar[][][] getXVariablesByLevel();
+
+    /**
+     * Creates a flat view of the solutions of the master problem.
+     * The variables and their indices are computed once and shared by all views.
+     * @return a view with its own values
+     */
+    protected synchronized MasterSolutionView createSolutionView(){
+        if(solutionLayout == null){
+            solutionLayout = new MasterSolutionView(pp, getXVariablesByLevel(), y, phi);
+        }
+        return solutionLayout.copy();
+    }
+
+    /**
+     * Separates the optimality cuts violated by a solution of the master problem.
+     * The solution is read on the thread of the callback, while the products,
+     * which are independent, are evaluated in parallel when a cut generation pool is available.
+     * The cuts must then be added from the thread of the callback.
+     */
+    protected abstract class OptimalityCutSeparator {
+        protected final MasterSolutionView view; // The solution being separated
+        private final OptimalityCutBuilder cutBuilder; // Builds the cuts from primitive buffers
+        protected final double Y[][][]; // [nProducts][nFacilities][maxNProductionLevels]
+        protected final double Phi[]; // [nProducts]
+        private final double quantities[][]; // The quantity of each product at each facility [nProducts][nFacilities]
+        private final double coreQuantities[][]; // The quantity of each product at each facility in the core point [nProducts][nFacilities]
+        private final double acceptedQuantities[][]; // The quantities of the last integer solution for which the cut of the product was not violated [nProducts][nFacilities]
+        private final int acceptedDistributions[]; // The distribution enforced in that solution, 0 if none [nProducts]
+        private final RecourseEvaluation evaluations[]; // [nProducts]
+        private final boolean violated[]; // Whether the optimality cut of each product is violated [nProducts]
+        private double integralityThreshold = 0.5; // The value above which a y variable is considered equal to one
+        private double minViolation = 0; // The minimum relative violation of the cuts separated at fractional solutions
+
+        protected OptimalityCutSeparator() {
+            this.view = createSolutionView();
+            this.cutBuilder = new OptimalityCutBuilder(model, 2 * pp.getnFacilities() + 1);
+            this.Y = new double[pp.getnProducts()][pp.getnFacilities()][pp.getMaxnProductionLevels()];
+            this.Phi = new double[pp.getnProducts()];
+            this.quantities = new double[pp.getnProducts()][pp.getnFacilities()];
+            this.coreQuantities = new double[pp.getnProducts()][pp.getnFacilities()];
+            this.acceptedQuantities = new double[pp.getnProducts()][pp.getnFacilities()];
+            this.acceptedDistributions = new int[pp.getnProducts()];
+            this.evaluations = new RecourseEvaluation[pp.getnProducts()];
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                evaluations[p-1] = new RecourseEvaluation(pp.getnFacilities());
+            }
+            this.violated = new boolean[pp.getnProducts()];
+        }
+
+        /**
+         * Computes the quantity of the product produced at each facility when the given distribution is enforced.
+         * @param p the product
+         * @param d the distribution
+         * @param quantities the array where the quantities are stored [nFacilities]
+         */
+        protected abstract void computeQuantities(int p, int d, double quantities[]);
+
+        /**
+         * Returns the x variable giving the quantity produced at the facility when the distribution is enforced.
+         * @param p the product
+         * @param d the distribution
+         * @param f the facility
+         * @return
+         */
+        protected abstract IloNumVar getQuantityVariable(int p, int d, int f);
+
+        /**
+         * Returns the weight of the y variable of the enforced level in the quantity produced at the facility, i.e.,
+         *    quantity = x + weight * y
+         * @param p the product
+         * @param d the distribution
+         * @param f the facility
+         * @return
+         */
+        protected abstract double getQuantityLevelWeight(int p, int d, int f);
+
+        /**
+         * Builds the optimality cut of the product corresponding to the given evaluation
+         *    phi_p - sum_f g_f (x_f + weight_f y_f) + M sum_f y_f <= cutConstant + M nFacilities
+         * where y_f are the y variables of the levels enforced by the distribution and M is an upper bound on phi_p.
+         * @param p the product
+         * @param evaluation
+         * @return
+         * @throws IloException
+         */
+        protected IloRange buildCut(int p, RecourseEvaluation evaluation) throws IloException {
+            int d = evaluation.getDistribution();
+            double M = pp.getUpperBoundProductExpectation(p);
+            // The cut is built from the coefficients aggregated over all scenarios
+            cutBuilder.clear();
+            cutBuilder.addTerm(1, phi[p-1]);
+            for(int f = 1; f <= pp.getnFacilities(); f++) {
+                double coefficient = evaluation.getCutCoefficient(f);
+                cutBuilder.addTerm(-coefficient, getQuantityVariable(p, d, f));
+                cutBuilder.addTerm(M - coefficient * getQuantityLevelWeight(p, d, f), y[p-1][f-1][pp.getDistributionProductionLevels(p,d,f)]);
+            }
+            return cutBuilder.buildLe(evaluation.getCutConstant() + M * pp.getnFacilities());
+        }
+
+        /**
+         * Reads the solution to separate with a single bulk call to the source.
+         * @param source
+         * @throws IloException
+         */
+        public void readPoint(MasterSolutionView.ValueSource source) throws IloException {
+            view.read(source);
+            for (int p = 1; p <= pp.getnProducts(); p++){
+                for(int f = 1; f <= pp.getnFacilities(); f++){
+                    for(int l = 1; l <= pp.getnProductionLevels(f,p); l++){
+                        Y[p-1][f-1][l-1] = view.getY(p,f,l);
+                    }
+                }
+                Phi[p-1] = view.getPhi(p);
+            }
+        }
+
+        public MasterSolutionView getView() {
+            return view;
+        }
+
+        /**
+         * Evaluates all products and checks which optimality cuts are violated.
+         * A distribution is enforced on a product if all its y variables are above the threshold.
+         * @param integralityThreshold the value above which a y variable is considered equal to one
+         * @return the number of violated cuts
+         */
+        public int separate(double integralityThreshold){
+            this.integralityThreshold = integralityThreshold;
+            forEachProduct(this::separateProduct);
+            int nViolated = 0;
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                if(violated[p-1]){
+                    nViolated++;
+                }
+            }
+            return nViolated;
+        }
+
+        private void separateProduct(int p){
+            violated[p-1] = false;
+            // First, we identify the distribution enforced on the product
+            int d = pp.getEnforcedDistribution(p, Y[p-1], integralityThreshold);
+            if(d > 0) {
+                // If a distribution is enforced we compute the expected profit
+                // for this distribution to make the optimality test
+                computeQuantities(p, d, quantities[p-1]);
+                double expectedProfit = evaluate(p, d, Phi[p-1] - 1e-9);
+                violated[p-1] = Phi[p-1] > expectedProfit + 1e-9;
+                if(!violated[p-1]){
+                    acceptedDistributions[p-1] = d;
+                    System.arraycopy(quantities[p-1], 0, acceptedQuantities[p-1], 0, pp.getnFacilities());
+                }
+            }
+        }
+
+        /**
+         * Evaluates all products at a fractional solution and checks which optimality cuts are violated.
+         * For each product, the recourse is evaluated for the distribution with the largest fractional support,
+         * i.e., the largest sum of the y variables of its production levels. The cut is violated if
+         *    phi_p > expectedProfit + M (nFacilities - support)
+         * which is the value of the right-hand side of the cut at the fractional solution.
+         * @param minViolation the minimum violation of a cut, relative to the value of phi
+         * @return the number of violated cuts
+         */
+        public int separateFractional(double minViolation){
+            this.minViolation = minViolation;
+            forEachProduct(this::separateFractionalProduct);
+            int nViolated = 0;
+            for(int p = 1; p <= pp.getnProducts(); p++){
+                if(violated[p-1]){
+                    nViolated++;
+                }
+            }
+            return nViolated;
+        }
+
+        private void separateFractionalProduct(int p){
+            // First, we identify the distribution with the largest support
+            int bestDistribution = pp.getLargestSupportDistribution(p, Y[p-1]);
+            double bestSupport = 0;
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                bestSupport = bestSupport + Y[p-1][f-1][pp.getDistributionProductionLevels(p,bestDistribution,f)];
+            }
+            // Then we evaluate the cut of this distribution at the fractional solution
+            computeQuantities(p, bestDistribution, quantities[p-1]);
+            double offset = pp.getUpperBoundProductExpectation(p) * (pp.getnFacilities() - bestSupport);
+            double tolerance = minViolation * Math.max(1, Math.abs(Phi[p-1]));
+            double expectedProfit = evaluate(p, bestDistribution, Phi[p-1] - offset - tolerance);
+            double cutValue = expectedProfit + offset;
+            violated[p-1] = Phi[p-1] - cutValue > tolerance;
+        }
+
+        /**
+         * Evaluates the recourse of the product for the quantities stored, choosing a Pareto-optimal cut if required.
+         * The evaluation is looked up in the cache of the product first, if any. A cached cut of nearby quantities only
+         * gives an upper bound on the expected profit, and is only used if this bound is below maxProfit, so that its cut
+         * rejects the solution. A solution is thus never accepted on an inexact evaluation.
+         * @param p the product
+         * @param d the distribution
+         * @param maxProfit the expected profit below which the cut is violated
+         * @return the expected profit, or an upper bound on it below maxProfit
+         */
+        private double evaluate(int p, int d, double maxProfit){
+            if(recourseCaches != null && recourseCaches[p-1].lookup(d, quantities[p-1], maxProfit, evaluations[p-1])){
+                return evaluations[p-1].getExpectedProfit();
+            }
+            double expectedProfit;
+            if(!paretoOptimalCuts){
+                expectedProfit = evaluators[p-1].evaluate(d, quantities[p-1], evaluations[p-1]);
+            }else {
+                computeCoreQuantities(p, d, coreQuantities[p-1]);
+                expectedProfit = evaluators[p-1].evaluate(d, quantities[p-1], coreQuantities[p-1], evaluations[p-1]);
+            }
+            if(recourseCaches != null){
+                recourseCaches[p-1].store(quantities[p-1], evaluations[p-1]);
+            }
+            return expectedProfit;
+        }
+
+        /**
+         * Computes the core point used to choose Pareto-optimal cuts, that is, the quantities at the middle
+         * of the production levels enforced by the distribution, averaged with the quantities of the last
+         * integer solution accepted for the product if it enforced the same distribution.
+         * @param p the product
+         * @param d the distribution
+         * @param core the array where the quantities are stored [nFacilities]
+         */
+        private void computeCoreQuantities(int p, int d, double core[]){
+            for(int f = 1; f <= pp.getnFacilities(); f++){
+                int level = pp.getDistributionProductionLevels(p,d,f) + 1;
+                double upperBound = Math.min(pp.getProductionLevelUpperBound(f,p,level), pp.getTotalCapacity(f));
+                core[f-1] = 0.5 * (pp.getProductionLevelLowerBound(f,p,level) + upperBound);
+                if(acceptedDistributions[p-1] == d){
+                    core[f-1] = 0.5 * (core[f-1] + acceptedQuantities[p-1][f-1]);
+                }
+            }
+        }
+
+        public boolean isViolated(int p){
+            return violated[p-1];
+        }
+
+        public IloRange getCut(int p) throws IloException {
+            return buildCut(p, evaluations[p-1]);
+        }
+    }
+
+    protected class CutsCallback extends IloCplex.LazyConstraintCallback {
+        private final OptimalityCutSeparator separator = createSeparator();
+
+        public CutsCallback(){
+
+        }
+
+        @Override
+        protected synchronized void main() throws IloException {
+            // Stores the LP root relaxation time
+            if(getNodeId().toString().equalsIgnoreCase("Node0")){
+                storeRootNodeRelaxation(getObjValue());
+            }
+
+            int callNumber = nCallbackCalls.incrementAndGet();
+            System.out.println("Callback call #"+callNumber+ ". # cuts added so far "+nCuts.get());
+            long cbStart = System.nanoTime();
+
+            separator.readPoint(this::getValues);
+            separator.separate(0.5);
+            // The cuts are added from the callback thread
+            for (int p = 1; p <= pp.getnProducts(); p++) {
+                if(separator.isViolated(p)){
+                    add(separator.getCut(p));
+                    nCuts.incrementAndGet();
+                }
+            }
+            System.out.println("# cuts after cut loop "+nCuts.get());
+            long cbEnd = System.nanoTime();
+            totalCallbackTime.add((cbEnd-cbStart)/1e9);
+        }
+    }
+
+    /**
+     * Separates optimality cuts at the fractional solutions of the LP relaxation, which tightens the bound of the nodes.
+     * The number of rounds of cuts at each node is limited.
+     * If enabled, the lifted cover inequalities violated by the fractional solutions are separated at every round,
+     * until none is violated.
+     */
+    protected class UserCutsCallback extends IloCplex.UserCutCallback {
+        private final OptimalityCutSeparator separator = createSeparator();
+        private final LiftedCoverSeparator coverSeparator; // Null if the cover inequalities are not separated
+        private final int maxRounds; // The maximum number of rounds at each node
+        private final double minViolation; // The minimum relative violation of the cuts
+        private IloCplex.NodeId lastNode = null;
+        private int nRounds = 0; // The number of rounds performed at the last node
+
+        public UserCutsCallback(Configuration config){
+            this.coverSeparator = config.separateLiftedCovers() ? createCoverSeparator() : null;
+            this.maxRounds = config.getUserCutRounds();
+            this.minViolation = config.getUserCutMinViolation();
+        }
+
+        @Override
+        protected synchronized void main() throws IloException {
+            // Counts the rounds performed at the current node
+            IloCplex.NodeId node = getNodeId();
+            if(!node.equals(lastNode)){
+                lastNode = node;
+                nRounds = 0;
+            }
+            if(nRounds >= maxRounds && coverSeparator == null){
+                return;
+            }
+            nRounds++;
+            long cbStart = System.nanoTime();
+
+            separator.readPoint(this::getValues);
+            if(coverSeparator != null){
+                for(int f = 1; f <= pp.getnFacilities(); f++){
+                    if(coverSeparator.separate(f, separator.view::getY, minViolation)){
+                        add(coverSeparator.buildCut(f, y), IloCplex.CutManagement.UseCutPurge);
+                        nCoverCuts.incrementAndGet();
+                    }
+                }
+            }
+            if(nRounds <= maxRounds){
+                separator.separateFractional(minViolation);
+                for (int p = 1; p <= pp.getnProducts(); p++) {
+                    if(separator.isViolated(p)){
+                        add(separator.getCut(p), IloCplex.CutManagement.UseCutPurge);
+                        nCuts.incrementAndGet();
+                    }
+                }
+            }
+            long cbEnd = System.nanoTime();
+            totalCallbackTime.add((cbEnd-cbStart)/1e9);
+        }
+    }
+
+    /**
+     * Generates the optimality cuts through the generic callback, which lets CPLEX explore the tree with all its threads.
+     * Each thread has its own separator, created when the thread starts, so that no state is shared among threads
+     * except the counters, which are atomic.
+     * Integer solutions are rejected in the candidate context. As with the legacy callbacks, the relaxation context is only
+     * used if user cuts are enabled: the optimality cuts violated by fractional LP solutions are added as user cuts
+     * for the allowed number of rounds at each node, and the lifted cover inequalities violated by the LP solutions, if enabled,
+     * at every round.
+     */
+    protected class GenericCutsCallback implements IloCplex.Callback.Function {
+        private final OptimalityCutSeparator separators[]; // The separator of each thread [nThreads]
+        private final LiftedCoverSeparator coverSeparators[]; // The cover separator of each thread, null if the covers are not separated [nThreads]
+        private final long lastNodes[]; // The last node at which each thread separated user cuts [nThreads]
+        private final int nRounds[]; // The number of rounds performed by each thread at its last node [nThreads]
+        private final int maxRounds; // The maximum number of rounds of fractional cuts at each node
+        private final double minViolation; // The minimum relative violation of the fractional cuts
+        private final File logFile;
+        private final double logFrequency; // The interval in seconds between logs;
+        private volatile double lastLogTime = 0;
+
+        public GenericCutsCallback(Configuration config) throws IloException {
+            int nThreads = config.getThreads() > 0 ? config.getThreads() : model.getNumCores();
+            this.separators = new OptimalityCutSeparator[nThreads];
+            this.coverSeparators = config.separateLiftedCovers() ? new LiftedCoverSeparator[nThreads] : null;
+            this.lastNodes = new long[nThreads];
+            this.nRounds = new int[nThreads];
+            this.maxRounds = config.getUserCutRounds();
+            this.minViolation = config.getUserCutMinViolation();
+            this.logFile = new File("log_"+config.getTestTime()+".log");
+            this.logFrequency = config.getLogFrequency();
+        }
+
+        @Override
+        public void invoke(IloCplex.Callback.Context context) throws IloException {
+            int threadId = context.getIntInfo(IloCplex.Callback.Context.Info.ThreadId);
+            if(context.inThreadUp()){
+                separators[threadId] = createSeparator();
+                if(coverSeparators != null){
+                    coverSeparators[threadId] = createCoverSeparator();
+                }
+            }else if(context.inThreadDown()){
+                separators[threadId] = null;
+                if(coverSeparators != null){
+                    coverSeparators[threadId] = null;
+                }
+            }else if(context.inCandidate()){
+                separateCandidate(context, separators[threadId]);
+            }else if(context.inRelaxation()){
+                separateRelaxation(context, threadId);
+            }else if(context.inGlobalProgress()){
+                logProgress(context);
+            }
+        }
+
+        private void separateCandidate(IloCplex.Callback.Context context, OptimalityCutSeparator separator) throws IloException {
+            if(!context.isCandidatePoint()){
+                throw new IloException("Unbounded solution");
+            }
+            int callNumber = nCallbackCalls.incrementAndGet();
+            System.out.println("Callback call #"+callNumber+ ". # cuts added so far "+nCuts.get());
+            long cbStart = System.nanoTime();
+
+            separator.readPoint(context::getCandidatePoint);
+            separator.separate(0.5);
+            for (int p = 1; p <= pp.getnProducts(); p++) {
+                if(separator.isViolated(p)){
+                    context.rejectCandidate(separator.getCut(p));
+                    nCuts.incrementAndGet();
+                }
+            }
+            long cbEnd = System.nanoTime();
+            totalCallbackTime.add((cbEnd-cbStart)/1e9);
+        }
+
+        private void separateRelaxation(IloCplex.Callback.Context context, int threadId) throws IloException {
+            // Stores the LP root relaxation time
+            if(context.getLongInfo(IloCplex.Callback.Context.Info.NodeCount) == 0){
+                storeRootNodeRelaxation(context.getRelaxationObjective());
+            }
+            // Counts the rounds performed at the current node
+            long node = context.getLongInfo(IloCplex.Callback.Context.Info.NodeUID);
+            if(node != lastNodes[threadId]){
+                lastNodes[threadId] = node;
+                nRounds[threadId] = 0;
+            }
+            nRounds[threadId]++;
+            long cbStart = System.nanoTime();
+
+            OptimalityCutSeparator separator = separators[threadId];
+            separator.readPoint(context::getRelaxationPoint);
+            if(coverSeparators != null){
+                LiftedCoverSeparator coverSeparator = coverSeparators[threadId];
+                for(int f = 1; f <= pp.getnFacilities(); f++){
+                    if(coverSeparator.separate(f, separator.view::getY, minViolation)){
+                        context.addUserCut(coverSeparator.buildCut(f, y), IloCplex.CutManagement.UseCutPurge, false);
+                        nCoverCuts.incrementAndGet();
+                    }
+                }
+            }
+            if(nRounds[threadId] <= maxRounds){
+                separator.separateFractional(minViolation);
+                for (int p = 1; p <= pp.getnProducts(); p++) {
+                    if(separator.isViolated(p)){
+                        context.addUserCut(separator.getCut(p), IloCplex.CutManagement.UseCutPurge, false);
+                        nCuts.incrementAndGet();
+                    }
+                }
+            }
+            long cbEnd = System.nanoTime();
+            totalCallbackTime.add((cbEnd-cbStart)/1e9);
+        }
+
+        private void logProgress(IloCplex.Callback.Context context) throws IloException {
+            if (this.logFrequency > 0) {
+                // Calculates elapsed time
+                double elapsedTime = (System.nanoTime() - start) / 1e9;
+
+                // We log at intervals of logFrequency seconds
+                if ((elapsedTime - lastLogTime) > logFrequency) {
+                    lastLogTime = elapsedTime;
+                    double incumbent = Double.NEGATIVE_INFINITY;
+                    double bestBound = context.getDoubleInfo(IloCplex.Callback.Context.Info.BestBound);
+                    double bestGap = Double.POSITIVE_INFINITY;
+                    if(context.getIntInfo(IloCplex.Callback.Context.Info.Feasible) != 0){
+                        incumbent = context.getIncumbentObjective();
+                        bestGap = Math.abs(bestBound - incumbent) / (1e-10 + Math.abs(incumbent));
+                    }
+                    printProgress(logFile, elapsedTime, incumbent, bestBound, bestGap,
+                            context.getLongInfo(IloCplex.Callback.Context.Info.NodeCount));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package utils;
+
+import problems.ArrayScenarioStore;
+import problems.ProductionPlanningProblemWithSalvageRevenue;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads instance files in the text format, possibly compressed with gzip (.gz). This is the only parser of the format,
+ * used by DataReader.readInstance and BinaryInstanceFile.
+ * The file is read in blocks of whole lines, and the fields are parsed directly from the bytes, without Scanner,
+ * String.split or regular expressions. The numbers are parsed exactly when their significant digits fit in 53 bits
+ * and a small exponent, which covers the instance files, and with Double.parseDouble otherwise.
+ * The yield scenarios, which make up most of the file, are parsed in parallel: the lines of the i-th yield scenario
+ * in the file are those of the i-th yield scenario of ArrayScenarioStore, so each block of lines is parsed by a separate task
+ * that only needs the position of its first scenario.
+ */
+public class TextInstanceParser {
+    private static final int BLOCK_SIZE = 1 << 22; // The approximate number of bytes in a block of lines
+    private static final double POWERS_OF_TEN[] = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22}; // The powers of ten that are exact doubles
+
+    /**
+     * Reads an instance file and generates the corresponding instance of the Production Planning Problem.
+     * @param pathToInstanceFile absolute or relative path to the instance file, which is decompressed if it ends with .gz
+     * @param offset the offset between the production levels
+     * @param singlePrecision whether the yields and the demands are stored in single precision
+     * @param offHeap whether the yield scenarios are stored off-heap, in which case they are written there as they are parsed
+     * @return an instance of the class ProductionPlanningProblem
+     * @throws IOException
+     */
+    public static ProductionPlanningProblemWithSalvageRevenue readProblemWithSalvageRevenue(String pathToInstanceFile, double offset, boolean singlePrecision, boolean offHeap) throws IOException {
+        try(InputStream in = open(pathToInstanceFile)){
+            Lines lines = new Lines(in);
+            Fields line = lines.current;
+
+            // Extracts the number of facilities and products
+            lines.next();
+            line.skip();
+            int nFacilities = line.nextInt();
+            lines.next();
+            line.skip();
+            int nProducts = line.nextInt();
+
+            // Extracts the total capacity
+            double totalCapacities[] = new double[nFacilities];
+            lines.next(); // Skips the header
+            for(int f = 1; f <= nFacilities; f++){
+                lines.next();
+                line.skip();
+                totalCapacities[f-1] = line.nextDouble();
+            }
+
+            // Extracts leftover costs and prices
+            double leftoverCosts[] = new double[nProducts];
+            double salesPrices[] = new double[nProducts];
+            lines.next(); // Skips the header
+            for(int p = 1; p <= nProducts; p++){
+                lines.next();
+                line.skip();
+                leftoverCosts[p-1] = line.nextDouble();
+                salesPrices[p-1] = line.nextDouble();
+            }
+
+            // Extracts manufacturing costs and # production levels
+            double manufacturingCosts[][] = new double[nFacilities][nProducts];
+            int nProductionLevels[][] = new int[nFacilities][nProducts];
+            lines.next(); // Skips the header
+            for(int f = 1; f <= nFacilities; f++){
+                for(int p = 1; p <= nProducts; p++){
+                    lines.next();
+                    line.skip();
+                    line.skip();
+                    manufacturingCosts[f-1][p-1] = line.nextDouble();
+                    nProductionLevels[f-1][p-1] = line.nextInt();
+                }
+            }
+            // The distributions are the combinations of the production levels at the facilities
+            int nDistributions[] = new int[nProducts];
+            int maxNDistributions = 0;
+            for(int p = 1; p <= nProducts; p++){
+                int nDist = 1;
+                for(int f = 1; f <= nFacilities; f++){
+                    nDist = nDist * nProductionLevels[f-1][p-1];
+                }
+                nDistributions[p-1] = nDist;
+                maxNDistributions = Math.max(maxNDistributions, nDist);
+            }
+
+            // Extracts production levels information
+            double productionLevelLowerBounds[][][] = new double[nFacilities][nProducts][];
+            double productionLevelUpperBounds[][][] = new double[nFacilities][nProducts][];
+            lines.next(); // Skips the header
+            for(int f = 1; f <= nFacilities; f++){
+                for(int p = 1; p <= nProducts; p++){
+                    productionLevelLowerBounds[f-1][p-1] = new double[nProductionLevels[f-1][p-1]];
+                    productionLevelUpperBounds[f-1][p-1] = new double[nProductionLevels[f-1][p-1]];
+                    for(int pl = 1; pl <= nProductionLevels[f-1][p-1]; pl++){
+                        lines.next();
+                        line.skip(4);
+                        productionLevelLowerBounds[f-1][p-1][pl-1] = line.nextDouble();
+                        productionLevelUpperBounds[f-1][p-1][pl-1] = line.nextDouble() - offset;
+                    }
+                }
+            }
+
+            // Extracts demand scenarios, until the header of the distributions
+            lines.next(); // Skips the header
+            ArrayList<double[]> demandScenarios = new ArrayList<>();
+            ArrayList<Double> demandScenarioProbabilities = new ArrayList<>();
+            lines.next();
+            while(line.startsWithDigit()){
+                int scenario = line.nextInt();
+                demandScenarioProbabilities.add(scenario, line.nextDouble());
+                double demand[] = new double[nProducts];
+                for(int p = 1; p <= nProducts; p++){
+                    demand[p-1] = line.nextDouble();
+                }
+                demandScenarios.add(scenario, demand);
+                lines.next();
+            }
+            int nDemandScenarios = demandScenarios.size();
+            double productDemandScenarioProbabilities[][] = new double[nProducts][nDemandScenarios];
+            double demandScenarioRealizations[][] = new double[nProducts][nDemandScenarios];
+            for(int p = 1; p <= nProducts; p++){
+                for(int sd = 1; sd <= nDemandScenarios; sd++){
+                    productDemandScenarioProbabilities[p-1][sd-1] = demandScenarioProbabilities.get(sd-1);
+                    demandScenarioRealizations[p-1][sd-1] = demandScenarios.get(sd-1)[p-1];
+                }
+            }
+
+            // Reads yields distributions (the header was read by the loop above)
+            int distributionProductionLevels[][][] = new int[nProducts][][];
+            String distributionNames[][] = new String[nProducts][];
+            int nYieldScenarios[][] = new int[nProducts][];
+            for(int p = 1; p <= nProducts; p++){
+                distributionProductionLevels[p-1] = new int[nDistributions[p-1]][nFacilities];
+                distributionNames[p-1] = new String[nDistributions[p-1]];
+                nYieldScenarios[p-1] = new int[nDistributions[p-1]];
+                for(int d = 1; d <= nDistributions[p-1]; d++){
+                    lines.next();
+                    distributionNames[p-1][d-1] = line.nextString();
+                    line.skip();
+                    for(int f = 1; f <= nFacilities; f++){
+                        distributionProductionLevels[p-1][d-1][f-1] = line.nextInt();
+                    }
+                    nYieldScenarios[p-1][d-1] = line.nextInt();
+                }
+            }
+            ArrayScenarioStore scenarios = ArrayScenarioStore.create(nFacilities, nYieldScenarios, productDemandScenarioProbabilities, demandScenarioRealizations, singlePrecision, offHeap);
+
+            // Reads the distribution yield scenarios, one block of lines per task
+            lines.next(); // Skips the header
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+            int nYieldScenariosRead = 0;
+            Fields block = line.remainder();
+            if(block == null){
+                block = lines.nextBlock();
+            }
+            while(block != null){
+                Fields yieldLines = block;
+                int first = nYieldScenariosRead;
+                nYieldScenariosRead = nYieldScenariosRead + yieldLines.countLines();
+                if(nYieldScenariosRead > scenarios.getnYieldScenariosTotal()){
+                    throw new IOException("More yield scenarios than declared in "+pathToInstanceFile);
+                }
+                tasks.add(pool.submit(() -> parseYieldScenarios(yieldLines, first, scenarios)));
+                // Limits the number of blocks in memory
+                while(tasks.size() > 2 * pool.getParallelism()){
+                    tasks.poll().join();
+                }
+                block = lines.nextBlock();
+            }
+            while(!tasks.isEmpty()){
+                tasks.poll().join();
+            }
+            if(nYieldScenariosRead != scenarios.getnYieldScenariosTotal()){
+                throw new IOException("Expected "+scenarios.getnYieldScenariosTotal()+" yield scenarios but read "+nYieldScenariosRead+" in "+pathToInstanceFile);
+            }
+
+            return new ProductionPlanningProblemWithSalvageRevenue(nFacilities, nProducts, totalCapacities, leftoverCosts, manufacturingCosts, salesPrices,
+                    nProductionLevels, productionLevelLowerBounds, productionLevelUpperBounds,
+                    nDistributions, maxNDistributions, distributionProductionLevels, distributionNames,
+                    scenarios);
+        }
+    }
+
+    private static InputStream open(String pathToInstanceFile) throws IOException {
+        InputStream in = new FileInputStream(pathToInstanceFile);
+        if(pathToInstanceFile.endsWith(".gz")){
+            return new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedInputStream(in, 1 << 16);
+    }
+
+    /**
+     * Parses the yield scenarios in a block of lines.
+     * @param lines the lines, each of which contains the name of the distribution, the product, the scenario, the probability and the yields
+     * @param first the position in the store of the first yield scenario of the block
+     * @param scenarios
+     */
+    private static void parseYieldScenarios(Fields lines, int first, ArrayScenarioStore scenarios){
+        double yields[] = new double[scenarios.getnFacilities()];
+        int position = first;
+        while(lines.nextLine()){
+            if(lines.isEmpty()){
+                continue;
+            }
+            lines.skip(3);
+            double probability = lines.nextDouble();
+            for(int f = 1; f <= yields.length; f++){
+                yields[f-1] = lines.nextDouble();
+            }
+            scenarios.setYieldScenario(position, probability, yields);
+            position++;
+        }
+    }
+
+    /**
+     * Reads the file in blocks of whole lines.
+     */
+    private static final class Lines {
+        private final InputStream in;
+        private byte leftover[] = new byte[0]; // The beginning of a line read with the previous block
+        private Fields current;
+
+        private Lines(InputStream in) throws IOException {
+            this.in = in;
+            this.current = nextBlock();
+            if(current == null){
+                current = new Fields(new byte[0], 0);
+            }
+        }
+
+        /**
+         * Moves to the next line that is not blank, reading the next block if needed.
+         * @throws IOException if the file ends
+         */
+        private void next() throws IOException {
+            while(!current.nextLine() || current.isEmpty()){
+                if(current.isExhausted()){
+                    Fields block = nextBlock();
+                    if(block == null){
+                        throw new IOException("Unexpected end of the instance file");
+                    }
+                    current.moveTo(block);
+                }
+            }
+        }
+
+        /**
+         * Reads the next block of whole lines.
+         * @return the block, or null at the end of the file
+         * @throws IOException
+         */
+        private Fields nextBlock() throws IOException {
+            byte data[] = new byte[Math.max(BLOCK_SIZE, 2 * leftover.length)];
+            System.arraycopy(leftover, 0, data, 0, leftover.length);
+            int length = leftover.length + in.readNBytes(data, leftover.length, data.length - leftover.length);
+            if(length == 0){
+                return null;
+            }
+            if(length < data.length){
+                // The end of the file
+                leftover = new byte[0];
+                return new Fields(data, length);
+            }
+            int end = length;
+            while(end > 0 && data[end-1] != '\n'){
+                end--;
+            }
+            if(end == 0){
+                // A line longer than the block
+                leftover = data;
+                return nextBlock();
+            }
+            leftover = new byte[length - end];
+            System.arraycopy(data, end, leftover, 0, leftover.length);
+            return new Fields(data, end);
+        }
+    }
+
+    /**
+     * The lines of a block and the fields of the current line, separated by commas.
+     */
+    private static final class Fields {
+        private byte data[];
+        private int limit; // The end of the block
+        private int nextLine; // The beginning of the next line
+        private int position; // The beginning of the next field
+        private int lineEnd; // The end of the current line
+
+        private Fields(byte data[], int limit) {
+            moveTo(data, 0, limit);
+        }
+
+        private void moveTo(Fields block) {
+            moveTo(block.data, 0, block.limit);
+        }
+
+        private void moveTo(byte data[], int from, int limit) {
+            this.data = data;
+            this.limit = limit;
+            this.nextLine = from;
+            this.position = from;
+            this.lineEnd = from;
+        }
+
+        /**
+         * Returns the lines of the block after the current one.
+         * @return the remaining lines, or null if there are none
+         */
+        private Fields remainder() {
+            if(nextLine >= limit){
+                return null;
+            }
+            Fields remainder = new Fields(data, limit);
+            remainder.moveTo(data, nextLine, limit);
+            return remainder;
+        }
+
+        private boolean isExhausted() {
+            return nextLine >= limit;
+        }
+
+        private boolean nextLine() {
+            if(nextLine >= limit){
+                return false;
+            }
+            position = nextLine;
+            int end = position;
+            while(end < limit && data[end] != '\n'){
+                end++;
+            }
+            nextLine = end + 1;
+            if(end > position && data[end-1] == '\r'){
+                end--;
+            }
+            lineEnd = end;
+            return true;
+        }
+
+        /**
+         * Checks whether the current line is blank, that is, empty or made of whitespace only.
+         * @return
+         */
+        private boolean isEmpty() {
+            for(int i = position; i < lineEnd; i++){
+                if(!isWhitespace(data[i])){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isWhitespace(byte c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+        }
+
+        /**
+         * Counts the lines that are not blank from the current position, without moving.
+         * @return
+         */
+        private int countLines() {
+            int nLines = 0;
+            boolean empty = true;
+            for(int i = nextLine; i < limit; i++){
+                byte c = data[i];
+                if(c == '\n'){
+                    if(!empty){
+                        nLines++;
+                    }
+                    empty = true;
+                } else if(!isWhitespace(c)){
+                    empty = false;
+                }
+            }
+            return empty ? nLines : nLines + 1;
+        }
+
+        private boolean startsWithDigit() {
+            return position < lineEnd && data[position] >= '0' && data[position] <= '9';
+        }
+
+        private int fieldEnd() {
+            int end = position;
+            while(end < lineEnd && data[end] != ','){
+                end++;
+            }
+            return end;
+        }
+
+        private void endField(int end) {
+            position = end < lineEnd ? end + 1 : lineEnd;
+        }
+
+        private void skip() {
+            endField(fieldEnd());
+        }
+
+        private void skip(int nFields) {
+            for(int i = 1; i <= nFields; i++){
+                skip();
+            }
+        }
+
+        private String nextString() {
+            int end = fieldEnd();
+            String value = new String(data, position, end - position, StandardCharsets.US_ASCII).trim();
+            endField(end);
+            return value;
+        }
+
+        private int nextInt() {
+            int end = fieldEnd();
+            int i = position;
+            while(i < end && data[i] == ' '){
+                i++;
+            }
+            boolean negative = i < end && data[i] == '-';
+            if(negative || (i < end && data[i] == '+')){
+                i++;
+            }
+            int start = i;
+            long value = 0;
+            while(i < end && data[i] >= '0' && data[i] <= '9' && value <= Integer.MAX_VALUE){
+                value = value * 10 + (data[i] - '0');
+                i++;
+            }
+            while(i < end && data[i] == ' '){
+                i++;
+            }
+            if(i != end || i == start || value > Integer.MAX_VALUE){
+                String field = new String(data, position, end - position, StandardCharsets.US_ASCII).trim();
+                endField(end);
+                return Integer.parseInt(field);
+            }
+            endField(end);
+            return negative ? (int) -value : (int) value;
+        }
+
+        /**
+         * Parses a decimal number. If the significant digits fit in a double and the power of ten is exact,
+         * the number is the result of a single correctly rounded multiplication or division, hence exact.
+         * Otherwise, the number is parsed with Double.parseDouble.
+         * @return
+         */
+        private double nextDouble() {
+            int end = fieldEnd();
+            int i = position;
+            while(i < end && data[i] == ' '){
+                i++;
+            }
+            boolean negative = i < end && data[i] == '-';
+            if(negative || (i < end && data[i] == '+')){
+                i++;
+            }
+            long mantissa = 0;
+            int exponent = 0;
+            int nDigits = 0;
+            boolean exact = true;
+            int digitsStart = i;
+            while(i < end && data[i] >= '0' && data[i] <= '9'){
+                if(nDigits < 18){
+                    mantissa = mantissa * 10 + (data[i] - '0');
+                    if(mantissa != 0){
+                        nDigits++;
+                    }
+                } else {
+                    exponent++;
+                    exact = false;
+                }
+                i++;
+            }
+            boolean hasDigits = i > digitsStart;
+            if(i < end && data[i] == '.'){
+                i++;
+                int fractionStart = i;
+                while(i < end && data[i] >= '0' && data[i] <= '9'){
+                    if(nDigits < 18){
+                        mantissa = mantissa * 10 + (data[i] - '0');
+                        exponent--;
+                        if(mantissa != 0){
+                            nDigits++;
+                        }
+                    } else if(data[i] != '0'){
+                        exact = false;
+                    }
+                    i++;
+                }
+                hasDigits = hasDigits || i > fractionStart;
+            }
+            if(hasDigits && i < end && (data[i] == 'e' || data[i] == 'E')){
+                i++;
+                boolean negativeExponent = i < end && data[i] == '-';
+                if(negativeExponent || (i < end && data[i] == '+')){
+                    i++;
+                }
+                int exponentStart = i;
+                int value = 0;
+                while(i < end && data[i] >= '0' && data[i] <= '9' && value < 100000){
+                    value = value * 10 + (data[i] - '0');
+                    i++;
+                }
+                exact = exact && i > exponentStart;
+                exponent = exponent + (negativeExponent ? -value : value);
+            }
+            while(i < end && data[i] == ' '){
+                i++;
+            }
+            if(!hasDigits || i != end || !exact || mantissa >= (1L << 53) || exponent < -22 || exponent > 22){
+                String field = new String(data, position, end - position, StandardCharsets.US_ASCII).trim();
+                endField(end);
+                return Double.parseDouble(field);
+            }
+            endField(end);
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+    }
+}